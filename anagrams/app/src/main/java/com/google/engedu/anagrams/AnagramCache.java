@@ -0,0 +1,149 @@
+/* Copyright 2016 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.engedu.anagrams;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Bounded LRU cache of word arrays keyed by letter signature. Each entry keeps the letter
+ * counts it was computed for, so a signature collision is a miss rather than a wrong answer.
+ * Cached arrays are shared and must not be modified. Not thread-safe: like the
+ * {@link AnagramDictionary} that owns it, it is used from one thread at a time.
+ */
+public class AnagramCache {
+
+    public static final int DEFAULT_MAX_ENTRIES = 128;
+
+    private static class Entry {
+        final int[] counts;
+        final String[] words;
+
+        Entry(int[] counts, String[] words) {
+            this.counts = counts;
+            this.words = words;
+        }
+    }
+
+    /** Counters since the cache was created or last cleared. */
+    public static class Stats {
+        private final long hits;
+        private final long misses;
+        private final long evictions;
+        private final int size;
+
+        Stats(long hits, long misses, long evictions, int size) {
+            this.hits = hits;
+            this.misses = misses;
+            this.evictions = evictions;
+            this.size = size;
+        }
+
+        public long getHits() {
+            return hits;
+        }
+
+        public long getMisses() {
+            return misses;
+        }
+
+        public long getEvictions() {
+            return evictions;
+        }
+
+        public int getSize() {
+            return size;
+        }
+
+        public double getHitRate() {
+            long lookups = hits + misses;
+            return lookups == 0 ? 0 : (double) hits / lookups;
+        }
+
+        public Stats plus(Stats other) {
+            return new Stats(hits + other.hits, misses + other.misses,
+                    evictions + other.evictions, size + other.size);
+        }
+
+        @Override
+        public String toString() {
+            return String.format("hits=%d misses=%d evictions=%d size=%d", hits, misses, evictions, size);
+        }
+    }
+
+    private final LinkedHashMap<Long, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private int maxEntries;
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    public AnagramCache() {
+        this(DEFAULT_MAX_ENTRIES);
+    }
+
+    public AnagramCache(int maxEntries) {
+        this.maxEntries = Math.max(0, maxEntries);
+    }
+
+    // The words cached for exactly these letters, or null
+    public String[] get(long signature, int[] counts) {
+        Entry entry = entries.get(signature);
+        if (entry != null && Arrays.equals(entry.counts, counts)) {
+            hits++;
+            return entry.words;
+        }
+        misses++;
+        return null;
+    }
+
+    public void put(long signature, int[] counts, String[] words) {
+        if (maxEntries == 0) return;
+        entries.put(signature, new Entry(counts.clone(), words));
+        trim();
+    }
+
+    // 0 turns the cache off; shrinking evicts the least recently used entries
+    public void setMaxEntries(int maxEntries) {
+        this.maxEntries = Math.max(0, maxEntries);
+        trim();
+    }
+
+    public int getMaxEntries() {
+        return maxEntries;
+    }
+
+    public Stats getStats() {
+        return new Stats(hits, misses, evictions, entries.size());
+    }
+
+    public void clear() {
+        entries.clear();
+        hits = 0;
+        misses = 0;
+        evictions = 0;
+    }
+
+    private void trim() {
+        Iterator<Map.Entry<Long, Entry>> eldest = entries.entrySet().iterator();
+        while (entries.size() > maxEntries) {
+            eldest.next();
+            eldest.remove();
+            evictions++;
+        }
+    }
+}
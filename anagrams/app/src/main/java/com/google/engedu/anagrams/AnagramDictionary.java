@@ -15,17 +15,21 @@
 
 package com.google.engedu.anagrams;
 
-import java.io.BufferedReader;
+import com.google.engedu.dictionary.Dawg;
+import com.google.engedu.dictionary.HeapEstimate;
+import com.google.engedu.dictionary.LetterSignature;
+import com.google.engedu.dictionary.WordStore;
+
 import java.io.IOException;
 import java.io.Reader;
 import java.util.ArrayList;
-import java.util.Arrays;
-import java.util.HashMap;
-import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Random;
-import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
 
 public class AnagramDictionary {
 
@@ -34,102 +38,384 @@ public class AnagramDictionary {
     private static final int MAX_WORD_LENGTH = 7;
     private Random random = new Random();
 
-    private List<String> wordList = new ArrayList<>();
-    private Set<String> wordSet = new HashSet<>();
-    private Map<String, Set<String>> lettersToWords = new HashMap<>();
+    // Words and their anagram groups, shared with the rest of the app through DictionaryService
+    private WordStore store;
+
+    // Set when the dictionary is backed by a precompiled index instead of a WordStore
+    private AnagramIndex index;
+
+    // Words of each looked-up anagram group, and the one-more-letter words of each looked-up base
+    private final AnagramCache groupCache = new AnagramCache();
+    private final AnagramCache oneMoreLetterCache = new AnagramCache();
+
+    // Shared so its memo of finished searches carries over from one call to the next
+    private final KMoreLettersSearch kMoreLettersSearch = new KMoreLettersSearch(this);
+
+    // One engine and candidate list for every round instead of new ones per call. Like the pools
+    // built on first use, this makes the dictionary single-threaded.
+    private final OneMoreLetterEngine oneMoreLetterEngine = new OneMoreLetterEngine(this);
+    private final List<String> roundCandidates = new ArrayList<>();
+
+    // Member positions (see memberStart) of the words in groups with more than MIN_NUM_ANAGRAMS
+    // words and a length from DEFAULT_WORD_LENGTH to MAX_WORD_LENGTH. Picking a position rather
+    // than a group makes every starter word equally likely.
+    private int[] starterMembers;
+    private long starterPoolNanos;
+
+    // Answers each word would have as a starter, by group member position (see memberStart);
+    // computed on first use when backed by a WordStore, precomputed in the index
+    private int[] answerCounts;
+    // Member positions of starters by Difficulty: difficulty d is [difficultyStart[d], difficultyStart[d + 1])
+    private int[] difficultyMembers;
+    private int[] difficultyStart;
+
+    // Every word as a DAWG, built on the first pattern query
+    private Dawg wordGraph;
+
+    // Null unless someone asked for measurements
+    private DictionaryMetrics metrics;
 
     public AnagramDictionary(Reader reader) throws IOException {
-        BufferedReader in = new BufferedReader(reader);
-        String line;
-        while((line = in.readLine()) != null) {
-            String word = line.trim();
-            if (wordSet.contains(word)) continue;
+        this(WordStore.read(reader));
+    }
+
+    // Builds the anagram groups on pool's threads; the result is the same as with one thread
+    public AnagramDictionary(Reader reader, ForkJoinPool pool) throws IOException {
+        this(WordStore.read(reader, pool));
+    }
+
+    public AnagramDictionary(WordStore store) {
+        this.store = store;
+        kMoreLettersSearch.setMemoSize(AnagramCache.DEFAULT_MAX_ENTRIES);
+        buildStarterPool();
+    }
+
+    public AnagramDictionary(AnagramIndex index) {
+        // The starter pool is built on first use so opening the index stays O(1)
+        this.index = index;
+        kMoreLettersSearch.setMemoSize(AnagramCache.DEFAULT_MAX_ENTRIES);
+    }
 
-            String sortedWord = sortString(word);
-            Set<String> sortedSet = lettersToWords.getOrDefault(sortedWord, new HashSet<String>());
+    private void buildStarterPool() {
+        long startNanos = System.nanoTime();
+        int size = 0;
+        int count = groupCount();
+        for (int group = 0; group < count; group++) {
+            if (isStarterGroup(group)) size += groupSize(group);
+        }
 
-            sortedSet.add(word);
-            lettersToWords.put(sortedWord, sortedSet);
+        int[] pool = new int[size];
+        int next = 0;
+        for (int group = 0; group < count; group++) {
+            if (!isStarterGroup(group)) continue;
+            for (int position = memberStart(group); position < memberStart(group + 1); position++) {
+                pool[next++] = position;
+            }
+        }
+        starterMembers = pool;
+        starterPoolNanos = System.nanoTime() - startNanos;
+    }
+
+    private void buildDifficultyPools() {
+        Difficulty[] levels = Difficulty.values();
+        int[] start = new int[levels.length + 1];
+        int count = groupCount();
+        for (int group = 0; group < count; group++) {
+            for (int position = memberStart(group); position < memberStart(group + 1); position++) {
+                int level = difficultyOf(group, position);
+                if (level >= 0) start[level + 1]++;
+            }
+        }
+        for (int level = 0; level < levels.length; level++) {
+            start[level + 1] += start[level];
+        }
+
+        int[] pool = new int[start[levels.length]];
+        int[] next = start.clone();
+        for (int group = 0; group < count; group++) {
+            for (int position = memberStart(group); position < memberStart(group + 1); position++) {
+                int level = difficultyOf(group, position);
+                if (level >= 0) pool[next[level]++] = position;
+            }
+        }
+        difficultyMembers = pool;
+        difficultyStart = start;
+    }
 
-            wordSet.add(word);
-            wordList.add(word);
+    // Ordinal of the Difficulty of a group member as a starter, or -1
+    private int difficultyOf(int group, int position) {
+        int length = groupWordLength(group);
+        if (length < DEFAULT_WORD_LENGTH || length > MAX_WORD_LENGTH) return -1;
+        int answers = answerCount(position);
+        for (Difficulty level : Difficulty.values()) {
+            if (level.accepts(answers)) return level.ordinal();
         }
+        return -1;
+    }
+
+    // Position of the group's first member; all members are numbered in group order
+    private int memberStart(int group) {
+        if (index != null) return index.getGroupStart(group);
+        return group < store.groupCount() ? store.groupStart(group) : store.size();
     }
 
-    private String sortString(String inp) {
-        // Helper method to sort strings
-        char[] sortedInpArr = inp.toCharArray();
-        Arrays.sort(sortedInpArr);
-        return new String(sortedInpArr);
+    private String member(int position) {
+        return index != null ? index.getWord(position) : store.groupMember(position);
+    }
+
+    int answerCount(int position) {
+        if (index != null) return index.getAnswerCount(position);
+        if (answerCounts == null) answerCounts = AnagramRound.countAnswers(store);
+        return answerCounts[position];
+    }
+
+    private boolean isStarterGroup(int group) {
+        int length = groupWordLength(group);
+        return groupSize(group) > MIN_NUM_ANAGRAMS && length >= DEFAULT_WORD_LENGTH && length <= MAX_WORD_LENGTH;
     }
 
     public boolean isGoodWord(String word, String base) {
-        return wordSet.contains(word) && !word.contains(base);
+        long start = startTimer();
+        boolean good = containsWord(word) && !word.contains(base);
+        stopTimer(DictionaryMetrics.IS_GOOD_WORD, start);
+        return good;
+    }
+
+    // Marks word as found in round. This is how the game checks a guess, so it is timed as
+    // IS_GOOD_WORD like isGoodWord.
+    public boolean markFound(AnagramRound round, String word) {
+        long start = startTimer();
+        boolean found = round.markFound(word);
+        stopTimer(DictionaryMetrics.IS_GOOD_WORD, start);
+        return found;
+    }
+
+    private boolean containsWord(String word) {
+        return index != null ? index.contains(word) : store.contains(word);
+    }
+
+    // Returns the anagram group using exactly the letters in counts, or -1 if there is none
+    int findGroup(long signature, int[] counts) {
+        if (index != null) {
+            int group = index.findGroup(signature);
+            return group >= 0 && index.groupMatches(group, counts) ? group : -1;
+        }
+        return store.findGroup(signature, counts);
+    }
+
+    int groupSize(int group) {
+        return index != null ? index.getGroupSize(group) : store.groupSize(group);
     }
 
+    String groupWord(int group, int i) {
+        return index != null ? index.getWord(index.getGroupStart(group) + i) : store.groupWord(group, i);
+    }
+
+    // The letters of a group, without decoding a String when backed by the index
+    CharSequence groupLetters(int group) {
+        return index != null ? index.getWordView(index.getGroupStart(group)) : store.groupWord(group, 0);
+    }
+
+    int groupWordLength(int group) {
+        return index != null ? index.getWordLength(index.getGroupStart(group)) : store.groupWord(group, 0).length();
+    }
+
+    int groupCount() {
+        return index != null ? index.getGroupCount() : store.groupCount();
+    }
+
+
+    // Entries kept by each of the result caches and the k-more-letters memo; 0 turns caching off
+    public void setCacheSize(int maxEntries) {
+        groupCache.setMaxEntries(maxEntries);
+        oneMoreLetterCache.setMaxEntries(maxEntries);
+        kMoreLettersSearch.setMemoSize(maxEntries);
+    }
+
+    public AnagramCache.Stats getCacheStats() {
+        return groupCache.getStats().plus(oneMoreLetterCache.getStats());
+    }
+
+    // Starts recording load phases, footprint and query latencies into metrics; null stops it
+    public void setMetrics(DictionaryMetrics metrics) {
+        this.metrics = metrics;
+        if (metrics == null) return;
+        if (store != null) metrics.recordPhases(store.getLoadTimings());
+        if (starterMembers != null) metrics.recordPhase("starters", starterPoolNanos);
+        metrics.recordRetainedBytes(estimateRetainedBytes());
+    }
+
+    public DictionaryMetrics getMetrics() {
+        return metrics;
+    }
+
+    // Estimated bytes held by each structure; a memory-mapped index is counted although it is off-heap
+    public Map<String, Long> estimateRetainedBytes() {
+        Map<String, Long> bytes = new LinkedHashMap<>();
+        if (index != null) {
+            bytes.put("index", (long) index.getSizeInBytes());
+        } else {
+            bytes.putAll(store.estimateRetainedBytes());
+        }
+        if (starterMembers != null) {
+            bytes.put("starters", HeapEstimate.array(starterMembers.length, 4));
+        }
+        if (answerCounts != null) {
+            bytes.put("answerCounts", HeapEstimate.array(answerCounts.length, 4));
+        }
+        if (difficultyMembers != null) {
+            bytes.put("difficulty", HeapEstimate.array(difficultyMembers.length, 4) + HeapEstimate.array(difficultyStart.length, 4));
+        }
+        return bytes;
+    }
+
+    private long startTimer() {
+        return metrics != null ? System.nanoTime() : 0;
+    }
+
+    private void stopTimer(String query, long start) {
+        DictionaryMetrics metrics = this.metrics;
+        if (metrics != null && start != 0) metrics.recordLatency(query, System.nanoTime() - start);
+    }
+
+    AnagramCache getOneMoreLetterCache() {
+        return oneMoreLetterCache;
+    }
 
     public List<String> getAnagrams(String targetWord) {
-        String sortedTarget = sortString(targetWord);
-        Set<String> anagramSet = lettersToWords.getOrDefault(sortedTarget, new HashSet<String>());
+        long start = startTimer();
+        List<String> anagrams = anagramsOf(targetWord);
+        stopTimer(DictionaryMetrics.GET_ANAGRAMS, start);
+        return anagrams;
+    }
+
+    private List<String> anagramsOf(String targetWord) {
+        int[] counts = new int[LetterSignature.ALPHABET_SIZE];
+        if (!LetterSignature.countLetters(targetWord, counts)) return new ArrayList<>();
+        long signature = LetterSignature.of(counts);
+        String[] group = groupCache.get(signature, counts);
+        if (group == null) {
+            group = groupWords(findGroup(signature, counts));
+            groupCache.put(signature, counts, group);
+        }
 
         // A word is considered anagram of itself, so need to exclude it
         // Preallocate space for list for potential savings
         // Emulate Set difference manually
-        int LIST_SIZE = anagramSet.size();
-        List<String> res = new ArrayList<>(Math.max(LIST_SIZE - 1, 0));
-
-        for (String word : anagramSet) {
+        List<String> res = new ArrayList<>(Math.max(group.length - 1, 0));
+        for (String word : group) {
             if (!word.equals(targetWord)) res.add(word);
         }
 
         return res;
     }
 
-    public List<String> getAnagramsWithOneMoreLetter(String word) {
-        List<String> result = new ArrayList<>();
-        for (int i = 0; i < 26; i++) {
-            char ch = (char)(i + 97);
-            List anagrams = getAnagrams(word + ch);
-            result.addAll(anagrams);
+    private String[] groupWords(int group) {
+        if (group < 0) return new String[0];
+        String[] words = new String[groupSize(group)];
+        for (int i = 0; i < words.length; i++) {
+            words[i] = groupWord(group, i);
         }
+        return words;
+    }
 
+    public List<String> getAnagramsWithOneMoreLetter(String word) {
+        long start = startTimer();
+        List<String> result = new ArrayList<>();
+        oneMoreLetterEngine.findAnagrams(word, result);
+        stopTimer(DictionaryMetrics.GET_ANAGRAMS_WITH_ONE_MORE_LETTER, start);
         return result;
     }
 
-    // Optional method; works
-    public List<String> getAnagramsWithAtLeastKMoreLetters(String word, int k) {
-        List<String> result = new ArrayList<>();
-        if (k == 0) { return result; }
-
-        for (int i = 0; i < 26; i++) {
-            char ch = (char)(i + 97);
-            String newWord = word + ch;
-            List anagrams = getAnagrams(newWord);
-
-            // Could pull out, but hoping for early return to prune recursion tree
-            if (anagrams.size() > 0) {
-                List<String> nextAnagrams = getAnagramsWithAtLeastKMoreLetters(newWord, k-1);
-                result.addAll(nextAnagrams);
-                result.addAll(anagrams);
+    // A round on word whose answers are its one-more-letter anagrams the game accepts. The round
+    // copies the candidates, so the list is reused for the next one.
+    public AnagramRound startRound(String word) {
+        long start = startTimer();
+        oneMoreLetterEngine.findAnagrams(word, roundCandidates);
+        stopTimer(DictionaryMetrics.GET_ANAGRAMS_WITH_ONE_MORE_LETTER, start);
+        return new AnagramRound(word, roundCandidates);
+    }
+
+    // Ways to spell phrase's letters with up to maxWords words, ignoring spaces and punctuation.
+    // Results are produced as the iterator is advanced, so even huge result sets can be walked.
+    public Iterator<List<String>> findMultiWordAnagrams(String phrase, int maxWords) {
+        return new MultiWordAnagramSearch(this, phrase, maxWords);
+    }
+
+    // Words matching pattern, where '?' is any one letter and '*' any run of letters (see Dawg#match)
+    public List<String> findMatches(String pattern, int limit) {
+        return wordGraph().match(pattern, limit);
+    }
+
+    // Words using all of letters plus up to blanks more, as with blank tiles
+    public List<String> findAnagramsWithBlanks(String letters, int blanks, int limit) {
+        return wordGraph().anagramsWithBlanks(letters, blanks, limit);
+    }
+
+    private Dawg wordGraph() {
+        if (wordGraph == null) {
+            int count = index != null ? index.getWordCount() : store.size();
+            List<String> words = new ArrayList<>(count);
+            for (int position = 0; position < count; position++) {
+                words.add(member(position));
             }
+            wordGraph = Dawg.build(words);
         }
+        return wordGraph;
+    }
+
+    // Optional method; works
+    public List<String> getAnagramsWithAtLeastKMoreLetters(String word, int k) {
+        return getAnagramsWithAtLeastKMoreLetters(word, k, KMoreLettersSearch.NO_LIMIT, Long.MAX_VALUE,
+                TimeUnit.NANOSECONDS);
+    }
 
+    // Stops after resultLimit words or once timeBudget has passed, whichever comes first;
+    // wasKMoreLettersSearchTruncated tells whether it did. k must be at least 1 and resultLimit
+    // positive (KMoreLettersSearch.NO_LIMIT for no limit).
+    public List<String> getAnagramsWithAtLeastKMoreLetters(String word, int k, int resultLimit,
+            long timeBudget, TimeUnit unit) {
+        if (k < 1) throw new IllegalArgumentException("k must be at least 1: " + k);
+        if (resultLimit <= 0) throw new IllegalArgumentException("resultLimit must be positive: " + resultLimit);
+        long start = startTimer();
+        kMoreLettersSearch.setResultLimit(resultLimit);
+        kMoreLettersSearch.setTimeBudget(timeBudget, unit);
+        List<String> result = kMoreLettersSearch.find(word, k);
+        stopTimer(DictionaryMetrics.GET_ANAGRAMS_WITH_K_MORE_LETTERS, start);
         return result;
     }
 
-    public String pickGoodStarterWord() {
-        int size = wordList.size();
-        int randInt = random.nextInt(size);
-        for (int i = randInt; i < randInt + size; i++) {
-            String word = wordList.get(i % size);
-            String sorted = sortString(word);
-            if (lettersToWords.get(sorted).size() > MIN_NUM_ANAGRAMS) {
-                return word;
-            }
+    public boolean wasKMoreLettersSearchTruncated() {
+        return kMoreLettersSearch.wasTruncated();
+    }
+
+    // Picks a starter whose number of answers fits difficulty, or falls back to
+    // pickGoodStarterWord if there is none. O(1) once the pools are built on first use.
+    public String pickStarterWord(Difficulty difficulty) {
+        long start = startTimer();
+        if (difficultyMembers == null) buildDifficultyPools();
+        int from = difficultyStart[difficulty.ordinal()];
+        int to = difficultyStart[difficulty.ordinal() + 1];
+        String word;
+        if (from < to) {
+            word = member(difficultyMembers[from + random.nextInt(to - from)]);
+        } else {
+            word = pickGoodStarterWord();
         }
+        stopTimer(DictionaryMetrics.PICK_STARTER_WORD, start);
+        return word;
+    }
 
-        // If code enters here, then there are no words which satisfy MIN_NUM_ANAGRAMS
-        // TODO: Throw exception instead and handle exception
-        throw new Error();
+    // A word from a group of more than MIN_NUM_ANAGRAMS words, every such word equally likely.
+    // O(1) once the pool is built. Throws IllegalStateException if the word list has no such group.
+    public String pickGoodStarterWord() {
+        long start = startTimer();
+        if (starterMembers == null) buildStarterPool();
+        if (starterMembers.length == 0) {
+            throw new IllegalStateException("No word has more than " + MIN_NUM_ANAGRAMS + " anagrams");
+        }
+        String word = member(starterMembers[random.nextInt(starterMembers.length)]);
+        stopTimer(DictionaryMetrics.PICK_GOOD_STARTER_WORD, start);
+        return word;
     }
 }
@@ -0,0 +1,72 @@
+/* Copyright 2016 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.engedu.anagrams;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Builds an AnagramDictionary on a worker thread. The listener is called on the callback
+ * executor (the UI thread in the app), and the returned Future can be waited on or cancelled.
+ */
+public class AnagramDictionaryLoader {
+
+    public interface Listener {
+        void onDictionaryLoaded(AnagramDictionary dictionary);
+
+        void onDictionaryLoadFailed(Exception e);
+    }
+
+    private final ExecutorService worker = Executors.newSingleThreadExecutor();
+    private final Executor callbackExecutor;
+
+    public AnagramDictionaryLoader(Executor callbackExecutor) {
+        this.callbackExecutor = callbackExecutor;
+    }
+
+    public Future<AnagramDictionary> load(final Callable<AnagramDictionary> source, final Listener listener) {
+        return worker.submit(new Callable<AnagramDictionary>() {
+            @Override
+            public AnagramDictionary call() throws Exception {
+                try {
+                    final AnagramDictionary dictionary = source.call();
+                    callbackExecutor.execute(new Runnable() {
+                        @Override
+                        public void run() {
+                            listener.onDictionaryLoaded(dictionary);
+                        }
+                    });
+                    return dictionary;
+                } catch (final Exception e) {
+                    callbackExecutor.execute(new Runnable() {
+                        @Override
+                        public void run() {
+                            listener.onDictionaryLoadFailed(e);
+                        }
+                    });
+                    throw e;
+                }
+            }
+        });
+    }
+
+    public void shutdown() {
+        worker.shutdownNow();
+    }
+}
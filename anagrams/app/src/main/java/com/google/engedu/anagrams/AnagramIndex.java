@@ -0,0 +1,213 @@
+/* Copyright 2016 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.engedu.anagrams;
+
+import com.google.engedu.dictionary.LetterSignature;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Read-only view over a precompiled anagram index (see {@link AnagramIndexWriter}).
+ *
+ * Layout, all values big-endian:
+ *   int magic, version, wordCount, groupCount
+ *   long signatures[groupCount]      {@link LetterSignature} of each anagram group, ascending
+ *   int groupStarts[groupCount + 1]  first word of each group in the word table
+ *   int wordOffsets[wordCount + 1]   offsets of each word into the word bytes
+ *   int answerCounts[wordCount]      one-more-letter anagrams the game accepts for each word
+ *   word bytes                       ISO-8859-1, one byte per letter
+ *
+ * Groups are ordered by signature so lookups are a binary search straight over the buffer;
+ * nothing is parsed or copied when the index is opened.
+ */
+public class AnagramIndex {
+
+    static final int MAGIC = 0x414E4958; // "ANIX"
+    static final int VERSION = 3;
+    static final int HEADER_SIZE = 16;
+
+    private final ByteBuffer buffer;
+    private final int wordCount;
+    private final int groupCount;
+    private final int signaturesPos;
+    private final int groupStartsPos;
+    private final int wordOffsetsPos;
+    private final int answerCountsPos;
+    private final int wordBytesPos;
+
+    private AnagramIndex(ByteBuffer buffer, int wordCount, int groupCount) {
+        this.buffer = buffer;
+        this.wordCount = wordCount;
+        this.groupCount = groupCount;
+        signaturesPos = HEADER_SIZE;
+        groupStartsPos = signaturesPos + 8 * groupCount;
+        wordOffsetsPos = groupStartsPos + 4 * (groupCount + 1);
+        answerCountsPos = wordOffsetsPos + 4 * (wordCount + 1);
+        wordBytesPos = answerCountsPos + 4 * wordCount;
+    }
+
+    // Packs a word list into a direct buffer: every word is a few bytes at an int offset
+    // instead of a String, and the Java heap only holds this small object
+    public static AnagramIndex pack(Reader reader) throws IOException {
+        return wrap(AnagramIndexWriter.writeDirect(reader));
+    }
+
+    public static AnagramIndex wrap(ByteBuffer buffer) throws IOException {
+        if (buffer.limit() < HEADER_SIZE || buffer.getInt(0) != MAGIC) {
+            throw new IOException("Not an anagram index");
+        }
+        if (buffer.getInt(4) != VERSION) {
+            throw new IOException("Unsupported anagram index version " + buffer.getInt(4));
+        }
+        return new AnagramIndex(buffer, buffer.getInt(8), buffer.getInt(12));
+    }
+
+    public int getWordCount() {
+        return wordCount;
+    }
+
+    public int getGroupCount() {
+        return groupCount;
+    }
+
+    // Size of the whole index; when it is memory-mapped these bytes are off the Java heap
+    public int getSizeInBytes() {
+        return buffer.capacity();
+    }
+
+    public String getWord(int wordIndex) {
+        int start = buffer.getInt(wordOffsetsPos + 4 * wordIndex);
+        int end = buffer.getInt(wordOffsetsPos + 4 * (wordIndex + 1));
+        char[] chars = new char[end - start];
+        for (int i = 0; i < chars.length; i++) {
+            chars[i] = (char) (buffer.get(wordBytesPos + start + i) & 0xFF);
+        }
+        return new String(chars);
+    }
+
+    // Size of the word's round as a starter, precomputed by AnagramIndexWriter
+    public int getAnswerCount(int wordIndex) {
+        return buffer.getInt(answerCountsPos + 4 * wordIndex);
+    }
+
+    // The word as a view over the buffer; letters are decoded only when read
+    public CharSequence getWordView(int wordIndex) {
+        int start = buffer.getInt(wordOffsetsPos + 4 * wordIndex);
+        int end = buffer.getInt(wordOffsetsPos + 4 * (wordIndex + 1));
+        return new PackedWord(buffer, wordBytesPos + start, end - start);
+    }
+
+    public int getWordLength(int wordIndex) {
+        return buffer.getInt(wordOffsetsPos + 4 * (wordIndex + 1)) - buffer.getInt(wordOffsetsPos + 4 * wordIndex);
+    }
+
+    public int getGroupStart(int group) {
+        return buffer.getInt(groupStartsPos + 4 * group);
+    }
+
+    public int getGroupEnd(int group) {
+        return buffer.getInt(groupStartsPos + 4 * (group + 1));
+    }
+
+    public int getGroupSize(int group) {
+        return getGroupEnd(group) - getGroupStart(group);
+    }
+
+    public List<String> getGroupWords(int group) {
+        int start = getGroupStart(group);
+        int end = getGroupEnd(group);
+        List<String> words = new ArrayList<>(end - start);
+        for (int i = start; i < end; i++) {
+            words.add(getWord(i));
+        }
+        return words;
+    }
+
+    // Returns the group with the given signature, or -1 if no word has it
+    public int findGroup(long signature) {
+        int lo = 0, hi = groupCount - 1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            long midSignature = buffer.getLong(signaturesPos + 8 * mid);
+            if (midSignature < signature) {
+                lo = mid + 1;
+            } else if (midSignature > signature) {
+                hi = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -1;
+    }
+
+    // True if the group's words use exactly the letters in counts. counts is left unchanged.
+    public boolean groupMatches(int group, int[] counts) {
+        int wordIndex = getGroupStart(group);
+        int start = wordBytesPos + buffer.getInt(wordOffsetsPos + 4 * wordIndex);
+        int end = wordBytesPos + buffer.getInt(wordOffsetsPos + 4 * (wordIndex + 1));
+        int consumed = start;
+        boolean match = true;
+        while (consumed < end) {
+            int letter = (buffer.get(consumed) & 0xFF) - 'a';
+            if (letter < 0 || letter >= LetterSignature.ALPHABET_SIZE) {
+                match = false;
+                break;
+            }
+            consumed++;
+            if (--counts[letter] < 0) {
+                match = false;
+                break;
+            }
+        }
+        if (match) {
+            for (int i = 0; i < LetterSignature.ALPHABET_SIZE; i++) {
+                if (counts[i] != 0) {
+                    match = false;
+                    break;
+                }
+            }
+        }
+        for (int i = start; i < consumed; i++) {
+            counts[(buffer.get(i) & 0xFF) - 'a']++;
+        }
+        return match;
+    }
+
+    public boolean contains(String word) {
+        int group = findGroup(LetterSignature.of(word));
+        if (group < 0) return false;
+
+        for (int i = getGroupStart(group); i < getGroupEnd(group); i++) {
+            if (wordEquals(i, word)) return true;
+        }
+        return false;
+    }
+
+    private boolean wordEquals(int wordIndex, String word) {
+        int start = buffer.getInt(wordOffsetsPos + 4 * wordIndex);
+        int end = buffer.getInt(wordOffsetsPos + 4 * (wordIndex + 1));
+        if (end - start != word.length()) return false;
+
+        for (int i = 0; i < word.length(); i++) {
+            if ((buffer.get(wordBytesPos + start + i) & 0xFF) != word.charAt(i)) return false;
+        }
+        return true;
+    }
+}
@@ -0,0 +1,161 @@
+/* Copyright 2016 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.engedu.anagrams;
+
+import com.google.engedu.dictionary.LetterSignature;
+import com.google.engedu.dictionary.WordPipeline;
+import com.google.engedu.dictionary.WordSink;
+import com.google.engedu.dictionary.WordSources;
+import com.google.engedu.dictionary.WordStore;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Compiles a word list into the binary format read by {@link AnagramIndex}. It is a
+ * {@link WordSink}, so it can sit at the end of a {@link WordPipeline}.
+ * Runs at build time from the compileAnagramIndex Gradle task, and at run time through
+ * {@link AnagramIndex#pack}.
+ *
+ * There is one serializer, from a {@link WordStore}: the store has already deduplicated,
+ * sorted and grouped the words and ruled out signature collisions, so only the group order and
+ * the answer counts are left to work out.
+ */
+public class AnagramIndexWriter implements WordSink {
+
+    private final WordStore.Builder words = new WordStore.Builder();
+
+    public static void write(Reader reader, OutputStream out) throws IOException {
+        writeTo(WordStore.read(reader), out);
+    }
+
+    // Builds the index straight into a direct buffer, so none of it lives on the Java heap
+    public static ByteBuffer writeDirect(Reader reader) throws IOException {
+        return writeDirect(WordStore.read(reader));
+    }
+
+    public static ByteBuffer writeDirect(WordStore store) throws IOException {
+        return write(store, true);
+    }
+
+    public static void writeTo(WordStore store, OutputStream out) throws IOException {
+        ByteBuffer buffer = write(store, false);
+        out.write(buffer.array(), 0, buffer.limit());
+        out.flush();
+    }
+
+    @Override
+    public void accept(String word) {
+        words.accept(word);
+    }
+
+    public void writeTo(OutputStream out) throws IOException {
+        writeTo(words.build(), out);
+    }
+
+    private static ByteBuffer write(WordStore store, boolean direct) throws IOException {
+        int groupCount = store.groupCount();
+        int wordCount = store.size();
+        int wordBytes = 0;
+        long[] signatures = new long[groupCount];
+        for (int group = 0; group < groupCount; group++) {
+            signatures[group] = LetterSignature.of(store.groupWord(group, 0));
+            for (int i = 0, size = store.groupSize(group); i < size; i++) {
+                String word = store.groupWord(group, i);
+                if (!isEncodable(word)) throw new IOException("Word is not ISO-8859-1: " + word);
+                wordBytes += word.length();
+            }
+        }
+        // Signatures are distinct, so each group's rank is where its signature lands once sorted
+        Arrays.sort(signatures);
+        int[] order = new int[groupCount];
+        for (int group = 0; group < groupCount; group++) {
+            order[Arrays.binarySearch(signatures, LetterSignature.of(store.groupWord(group, 0)))] = group;
+        }
+
+        int size = AnagramIndex.HEADER_SIZE + 8 * groupCount + 4 * (groupCount + 1)
+                + 4 * (wordCount + 1) + 4 * wordCount + wordBytes;
+        ByteBuffer buffer = direct ? ByteBuffer.allocateDirect(size) : ByteBuffer.allocate(size);
+        buffer.putInt(AnagramIndex.MAGIC);
+        buffer.putInt(AnagramIndex.VERSION);
+        buffer.putInt(wordCount);
+        buffer.putInt(groupCount);
+
+        for (long signature : signatures) {
+            buffer.putLong(signature);
+        }
+
+        int start = 0;
+        for (int group : order) {
+            buffer.putInt(start);
+            start += store.groupSize(group);
+        }
+        buffer.putInt(start);
+
+        int offset = 0;
+        for (int group : order) {
+            for (int i = 0, groupSize = store.groupSize(group); i < groupSize; i++) {
+                buffer.putInt(offset);
+                offset += store.groupWord(group, i).length();
+            }
+        }
+        buffer.putInt(wordBytes);
+
+        int[] answers = AnagramRound.countAnswers(store);
+        for (int group : order) {
+            for (int i = 0, groupSize = store.groupSize(group); i < groupSize; i++) {
+                buffer.putInt(answers[store.groupStart(group) + i]);
+            }
+        }
+
+        for (int group : order) {
+            for (int i = 0, groupSize = store.groupSize(group); i < groupSize; i++) {
+                String word = store.groupWord(group, i);
+                for (int c = 0; c < word.length(); c++) {
+                    buffer.put((byte) word.charAt(c));
+                }
+            }
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    private static boolean isEncodable(String word) {
+        for (int i = 0; i < word.length(); i++) {
+            if (word.charAt(i) > 0xFF) return false;
+        }
+        return true;
+    }
+
+    // Usage: AnagramIndexWriter <words.txt or words.txt.gz> <words.idx>
+    public static void main(String[] args) throws IOException {
+        File output = new File(args[1]);
+        File parent = output.getParentFile();
+        if (parent != null && !parent.isDirectory() && !parent.mkdirs()) {
+            throw new IOException("Could not create " + parent);
+        }
+        AnagramIndexWriter writer = new AnagramIndexWriter();
+        new WordPipeline(WordSources.file(new File(args[0]))).to(writer).run();
+        try (OutputStream out = new FileOutputStream(output)) {
+            writer.writeTo(out);
+        }
+    }
+}
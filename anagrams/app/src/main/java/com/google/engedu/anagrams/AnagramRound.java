@@ -0,0 +1,129 @@
+/* Copyright 2016 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.engedu.anagrams;
+
+import com.google.engedu.dictionary.LetterSignature;
+import com.google.engedu.dictionary.WordStore;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The answers of one round and which of them the player has found. Each answer has a slot;
+ * a hash map finds a guess's slot and a bit set records it as found, so checking a guess is
+ * O(1) and the answers are never shifted or copied during play.
+ */
+public class AnagramRound {
+
+    private final String baseWord;
+    private final String[] answers;
+    private final Map<String, Integer> slots;
+    private final BitSet found;
+    private int foundCount;
+
+    // Answers that contain baseWord are dropped, since the game never accepts them
+    public AnagramRound(String baseWord, Collection<String> candidates) {
+        this.baseWord = baseWord;
+        List<String> valid = new ArrayList<>(candidates.size());
+        slots = new HashMap<>(candidates.size() * 2);
+        for (String candidate : candidates) {
+            if (accepts(baseWord, candidate) && !slots.containsKey(candidate)) {
+                slots.put(candidate, valid.size());
+                valid.add(candidate);
+            }
+        }
+        answers = valid.toArray(new String[valid.size()]);
+        found = new BitSet(answers.length);
+    }
+
+    // Whether the game takes candidate, a one-more-letter anagram of baseWord, as an answer
+    static boolean accepts(String baseWord, String candidate) {
+        return !candidate.contains(baseWord);
+    }
+
+    // How many answers a round would have for each word of store as its base word, by member
+    // position (store.groupStart(group) + i). The index writer stores these and AnagramDictionary
+    // computes them for a WordStore backend, so both count the same way.
+    static int[] countAnswers(WordStore store) {
+        int[] answers = new int[store.size()];
+        int[] counts = new int[LetterSignature.ALPHABET_SIZE];
+        int[] extensions = new int[LetterSignature.ALPHABET_SIZE];
+        for (int group = 0, groupCount = store.groupCount(); group < groupCount; group++) {
+            if (!LetterSignature.countLetters(store.groupWord(group, 0), counts)) continue;
+            // Probe each one-letter extension by signature, like OneMoreLetterEngine
+            long base = LetterSignature.of(counts);
+            int extensionCount = 0;
+            for (int letter = 0; letter < LetterSignature.ALPHABET_SIZE; letter++) {
+                counts[letter]++;
+                int extension = store.findGroup(LetterSignature.withLetter(base, letter), counts);
+                counts[letter]--;
+                if (extension >= 0) extensions[extensionCount++] = extension;
+            }
+            for (int i = 0, size = store.groupSize(group); i < size; i++) {
+                String word = store.groupWord(group, i);
+                int position = store.groupStart(group) + i;
+                for (int e = 0; e < extensionCount; e++) {
+                    for (int j = 0, extensionSize = store.groupSize(extensions[e]); j < extensionSize; j++) {
+                        if (accepts(word, store.groupWord(extensions[e], j))) answers[position]++;
+                    }
+                }
+            }
+        }
+        return answers;
+    }
+
+    public String getBaseWord() {
+        return baseWord;
+    }
+
+    // Marks word as found; false if it is not an answer or was already found
+    public boolean markFound(String word) {
+        Integer slot = slots.get(word);
+        if (slot == null || found.get(slot)) return false;
+        found.set(slot);
+        foundCount++;
+        return true;
+    }
+
+    public boolean isAnswer(String word) {
+        return slots.containsKey(word);
+    }
+
+    public int getAnswerCount() {
+        return answers.length;
+    }
+
+    public int getFoundCount() {
+        return foundCount;
+    }
+
+    public int getRemainingCount() {
+        return answers.length - foundCount;
+    }
+
+    // The answers not found yet, in the order they were given
+    public List<String> getRemaining() {
+        List<String> remaining = new ArrayList<>(getRemainingCount());
+        for (int slot = found.nextClearBit(0); slot < answers.length; slot = found.nextClearBit(slot + 1)) {
+            remaining.add(answers[slot]);
+        }
+        return remaining;
+    }
+}
@@ -15,7 +15,9 @@
 
 package com.google.engedu.anagrams;
 
+import android.app.ActivityManager;
 import android.content.Context;
+import android.content.res.AssetFileDescriptor;
 import android.content.res.AssetManager;
 import android.os.Bundle;
 import android.support.design.widget.FloatingActionButton;
@@ -34,18 +36,34 @@ import android.widget.EditText;
 import android.widget.TextView;
 import android.widget.Toast;
 
+import com.google.engedu.dictionary.DictionaryService;
+import com.google.engedu.dictionary.WordSources;
+import com.google.engedu.dictionary.WordStore;
+
+import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
-import java.util.List;
+import java.io.Reader;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executor;
 
 
 public class AnagramsActivity extends AppCompatActivity {
 
     public static final String START_MESSAGE = "Find as many words as possible that can be formed by adding one letter to <big>%s</big> (but that do not contain the substring %s).";
+    // Entries per result cache on low-RAM devices, instead of AnagramCache.DEFAULT_MAX_ENTRIES
+    private static final int LOW_RAM_CACHE_SIZE = 16;
     private AnagramDictionary dictionary;
     private String currentWord;
-    private List<String> anagrams;
+    private AnagramRound round;
+    // Difficulty of the next starter word, or null for any good starter
+    private Difficulty difficulty;
+    private AnagramDictionaryLoader loader;
+    // Wall time of opening the dictionary, reported when metrics are turned on
+    private volatile long openNanos;
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
@@ -53,14 +71,35 @@ public class AnagramsActivity extends AppCompatActivity {
         setContentView(R.layout.activity_anagrams);
         Toolbar toolbar = (Toolbar) findViewById(R.id.toolbar);
         setSupportActionBar(toolbar);
-        AssetManager assetManager = getAssets();
-        try {
-            InputStream inputStream = assetManager.open("words.txt");
-            dictionary = new AnagramDictionary(new InputStreamReader(inputStream));
-        } catch (IOException e) {
-            Toast toast = Toast.makeText(this, "Could not load dictionary", Toast.LENGTH_LONG);
-            toast.show();
-        }
+        // Load off the main thread so the first frame is not held up by the dictionary
+        loader = new AnagramDictionaryLoader(new Executor() {
+            @Override
+            public void execute(Runnable command) {
+                runOnUiThread(command);
+            }
+        });
+        loader.load(new Callable<AnagramDictionary>() {
+            @Override
+            public AnagramDictionary call() throws Exception {
+                long start = System.nanoTime();
+                AnagramDictionary opened = openDictionary(getAssets());
+                openNanos = System.nanoTime() - start;
+                return opened;
+            }
+        }, new AnagramDictionaryLoader.Listener() {
+            @Override
+            public void onDictionaryLoaded(AnagramDictionary loaded) {
+                if (isDestroyed()) return;
+                dictionary = loaded;
+            }
+
+            @Override
+            public void onDictionaryLoadFailed(Exception e) {
+                if (isDestroyed()) return;
+                Toast toast = Toast.makeText(AnagramsActivity.this, "Could not load dictionary", Toast.LENGTH_LONG);
+                toast.show();
+            }
+        });
         // Set up the EditText box to process the content of the box when the user hits 'enter'
         final EditText editText = (EditText) findViewById(R.id.editText);
         editText.setRawInputType(InputType.TYPE_CLASS_TEXT);
@@ -79,6 +118,53 @@ public class AnagramsActivity extends AppCompatActivity {
         });
     }
 
+    @Override
+    protected void onDestroy() {
+        loader.shutdown();
+        super.onDestroy();
+    }
+
+    private AnagramDictionary openDictionary(AssetManager assetManager) throws Exception {
+        ActivityManager activityManager = (ActivityManager) getSystemService(Context.ACTIVITY_SERVICE);
+        boolean lowRam = activityManager.isLowRamDevice();
+        AnagramDictionary opened = openBackend(assetManager, lowRam);
+        // Low-RAM devices keep fewer cached results around
+        if (lowRam) opened.setCacheSize(LOW_RAM_CACHE_SIZE);
+        return opened;
+    }
+
+    private AnagramDictionary openBackend(final AssetManager assetManager, boolean lowRam) throws Exception {
+        try {
+            return new AnagramDictionary(mapIndex(assetManager));
+        } catch (IOException indexError) {
+            // Index missing or stale. On low-RAM devices pack the word list off-heap ourselves
+            // rather than holding a String per word.
+            if (lowRam) {
+                try (Reader reader = new InputStreamReader(assetManager.open("words.txt"), "UTF-8")) {
+                    return new AnagramDictionary(AnagramIndex.pack(reader));
+                }
+            }
+            // Otherwise fall back to the shared word list
+            WordStore store = DictionaryService.getInstance().load(WordSources.stream(new Callable<InputStream>() {
+                @Override
+                public InputStream call() throws IOException {
+                    return assetManager.open("words.txt");
+                }
+            })).get();
+            return new AnagramDictionary(store);
+        }
+    }
+
+    private AnagramIndex mapIndex(AssetManager assetManager) throws IOException {
+        // words.idx is stored uncompressed (see aaptOptions) so it can be mapped straight from the APK
+        AssetFileDescriptor fd = assetManager.openFd("words.idx");
+        try (FileInputStream in = fd.createInputStream()) {
+            MappedByteBuffer buffer = in.getChannel().map(
+                    FileChannel.MapMode.READ_ONLY, fd.getStartOffset(), fd.getLength());
+            return AnagramIndex.wrap(buffer);
+        }
+    }
+
     private void processWord(EditText editText) {
         TextView resultView = (TextView) findViewById(R.id.resultView);
         String word = editText.getText().toString().trim().toLowerCase();
@@ -86,8 +172,7 @@ public class AnagramsActivity extends AppCompatActivity {
             return;
         }
         String color = "#cc0029";
-        if (dictionary.isGoodWord(word, currentWord) && anagrams.contains(word)) {
-            anagrams.remove(word);
+        if (round != null && dictionary.markFound(round, word)) {
             color = "#00aa29";
         } else {
             word = "X " + word;
@@ -96,12 +181,14 @@ public class AnagramsActivity extends AppCompatActivity {
         editText.setText("");
         FloatingActionButton fab = (FloatingActionButton) findViewById(R.id.fab);
         fab.show();
+        updateMetricsView();
     }
 
     @Override
     public boolean onCreateOptionsMenu(Menu menu) {
         // Inflate the menu; this adds items to the action bar if it is present.
         getMenuInflater().inflate(R.menu.menu_anagrams, menu);
+        menu.findItem(R.id.action_metrics).setVisible(BuildConfig.DEBUG);
         return true;
     }
 
@@ -116,6 +203,19 @@ public class AnagramsActivity extends AppCompatActivity {
         if (id == R.id.action_settings) {
             return true;
         }
+        if (id == R.id.difficulty_any || id == R.id.difficulty_easy
+                || id == R.id.difficulty_medium || id == R.id.difficulty_hard) {
+            // Takes effect from the next round
+            difficulty = id == R.id.difficulty_easy ? Difficulty.EASY
+                    : id == R.id.difficulty_medium ? Difficulty.MEDIUM
+                    : id == R.id.difficulty_hard ? Difficulty.HARD : null;
+            item.setChecked(true);
+            return true;
+        }
+        if (id == R.id.action_metrics) {
+            if (showMetrics(!item.isChecked())) item.setChecked(!item.isChecked());
+            return true;
+        }
 
         return super.onOptionsItemSelected(item);
     }
@@ -125,10 +225,15 @@ public class AnagramsActivity extends AppCompatActivity {
         FloatingActionButton fab = (FloatingActionButton) findViewById(R.id.fab);
         EditText editText = (EditText) findViewById(R.id.editText);
         TextView resultView = (TextView) findViewById(R.id.resultView);
+        if (dictionary == null) {
+            Toast.makeText(this, "Dictionary is still loading", Toast.LENGTH_SHORT).show();
+            return true;
+        }
         if (currentWord == null) {
-            currentWord = dictionary.pickGoodStarterWord();
+            currentWord = difficulty != null
+                    ? dictionary.pickStarterWord(difficulty) : dictionary.pickGoodStarterWord();
 //            anagrams = dictionary.getAnagrams(currentWord);
-            anagrams = dictionary.getAnagramsWithOneMoreLetter(currentWord);
+            round = dictionary.startRound(currentWord);
             gameStatus.setText(Html.fromHtml(String.format(START_MESSAGE, currentWord.toUpperCase(), currentWord)));
             fab.setImageResource(android.R.drawable.ic_menu_help);
             fab.hide();
@@ -143,9 +248,37 @@ public class AnagramsActivity extends AppCompatActivity {
             editText.setEnabled(false);
             fab.setImageResource(android.R.drawable.ic_media_play);
             currentWord = null;
-            resultView.append(TextUtils.join("\n", anagrams));
+            resultView.append(TextUtils.join("\n", round.getRemaining()));
             gameStatus.append(" Hit 'Play' to start again");
         }
+        updateMetricsView();
+        return true;
+    }
+
+    // Debug overlay: starts recording on first use and shows the latest snapshot.
+    // Returns false if it could not be shown yet.
+    private boolean showMetrics(boolean show) {
+        TextView metricsView = (TextView) findViewById(R.id.metricsView);
+        if (show && dictionary == null) {
+            Toast.makeText(this, "Dictionary is still loading", Toast.LENGTH_SHORT).show();
+            return false;
+        }
+        if (show && dictionary.getMetrics() == null) {
+            DictionaryMetrics metrics = new DictionaryMetrics();
+            metrics.recordPhase("open", openNanos);
+            dictionary.setMetrics(metrics);
+        }
+        metricsView.setVisibility(show ? View.VISIBLE : View.GONE);
+        updateMetricsView();
         return true;
     }
+
+    private void updateMetricsView() {
+        TextView metricsView = (TextView) findViewById(R.id.metricsView);
+        if (metricsView.getVisibility() != View.VISIBLE || dictionary == null) return;
+        DictionaryMetrics metrics = dictionary.getMetrics();
+        if (metrics != null) {
+            metricsView.setText(metrics.snapshot() + "\ncache: " + dictionary.getCacheStats());
+        }
+    }
 }
@@ -0,0 +1,122 @@
+/* Copyright 2016 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.engedu.anagrams;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Opt-in measurements for an {@link AnagramDictionary}: how long each load phase took, roughly
+ * how many bytes each structure retains, and a latency histogram per query. Nothing is recorded
+ * until one is passed to {@link AnagramDictionary#setMetrics}. Thread-safe.
+ */
+public class DictionaryMetrics {
+
+    public static final String GET_ANAGRAMS = "getAnagrams";
+    public static final String GET_ANAGRAMS_WITH_ONE_MORE_LETTER = "getAnagramsWithOneMoreLetter";
+    public static final String GET_ANAGRAMS_WITH_K_MORE_LETTERS = "getAnagramsWithAtLeastKMoreLetters";
+    public static final String PICK_GOOD_STARTER_WORD = "pickGoodStarterWord";
+    public static final String PICK_STARTER_WORD = "pickStarterWord";
+    public static final String IS_GOOD_WORD = "isGoodWord";
+
+    private final Map<String, Long> phaseNanos = new LinkedHashMap<>();
+    private final Map<String, Long> retainedBytes = new LinkedHashMap<>();
+    private final Map<String, LatencyHistogram> latencies = new LinkedHashMap<>();
+
+    /** An immutable copy of the metrics at one point in time. */
+    public static class Snapshot {
+        private final Map<String, Long> phaseNanos;
+        private final Map<String, Long> retainedBytes;
+        private final Map<String, LatencyHistogram> latencies;
+
+        Snapshot(Map<String, Long> phaseNanos, Map<String, Long> retainedBytes,
+                 Map<String, LatencyHistogram> latencies) {
+            this.phaseNanos = Collections.unmodifiableMap(phaseNanos);
+            this.retainedBytes = Collections.unmodifiableMap(retainedBytes);
+            this.latencies = Collections.unmodifiableMap(latencies);
+        }
+
+        public Map<String, Long> getPhaseNanos() {
+            return phaseNanos;
+        }
+
+        public Map<String, Long> getRetainedBytes() {
+            return retainedBytes;
+        }
+
+        public long getTotalRetainedBytes() {
+            long total = 0;
+            for (long bytes : retainedBytes.values()) {
+                total += bytes;
+            }
+            return total;
+        }
+
+        // Histograms are copies; recording more queries does not change them
+        public Map<String, LatencyHistogram> getLatencies() {
+            return latencies;
+        }
+
+        // A few lines of plain text, as shown by the debug overlay
+        @Override
+        public String toString() {
+            StringBuilder out = new StringBuilder("load:");
+            for (Map.Entry<String, Long> phase : phaseNanos.entrySet()) {
+                out.append(' ').append(phase.getKey()).append('=').append(LatencyHistogram.format(phase.getValue()));
+            }
+            out.append(String.format("\nheap: %.1f KB", getTotalRetainedBytes() / 1024.0));
+            for (Map.Entry<String, Long> structure : retainedBytes.entrySet()) {
+                out.append(String.format(" %s=%.1fKB", structure.getKey(), structure.getValue() / 1024.0));
+            }
+            for (Map.Entry<String, LatencyHistogram> query : latencies.entrySet()) {
+                out.append('\n').append(query.getKey()).append(": ").append(query.getValue());
+            }
+            return out.toString();
+        }
+    }
+
+    public synchronized void recordPhase(String phase, long nanos) {
+        phaseNanos.put(phase, nanos);
+    }
+
+    public synchronized void recordPhases(Map<String, Long> phases) {
+        phaseNanos.putAll(phases);
+    }
+
+    public synchronized void recordRetainedBytes(Map<String, Long> structures) {
+        retainedBytes.putAll(structures);
+    }
+
+    public void recordLatency(String query, long nanos) {
+        LatencyHistogram histogram;
+        synchronized (this) {
+            histogram = latencies.get(query);
+            if (histogram == null) {
+                histogram = new LatencyHistogram();
+                latencies.put(query, histogram);
+            }
+        }
+        histogram.record(nanos);
+    }
+
+    public synchronized Snapshot snapshot() {
+        Map<String, LatencyHistogram> copies = new LinkedHashMap<>();
+        for (Map.Entry<String, LatencyHistogram> query : latencies.entrySet()) {
+            copies.put(query.getKey(), query.getValue().copy());
+        }
+        return new Snapshot(new LinkedHashMap<>(phaseNanos), new LinkedHashMap<>(retainedBytes), copies);
+    }
+}
@@ -0,0 +1,45 @@
+/* Copyright 2016 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.engedu.anagrams;
+
+/**
+ * How hard a round is, by how many answers its starter word has (see {@link AnagramRound}).
+ */
+public enum Difficulty {
+    EASY(15, Integer.MAX_VALUE),
+    MEDIUM(8, 14),
+    HARD(3, 7);
+
+    private final int minAnswers;
+    private final int maxAnswers;
+
+    Difficulty(int minAnswers, int maxAnswers) {
+        this.minAnswers = minAnswers;
+        this.maxAnswers = maxAnswers;
+    }
+
+    public int getMinAnswers() {
+        return minAnswers;
+    }
+
+    public int getMaxAnswers() {
+        return maxAnswers;
+    }
+
+    public boolean accepts(int answers) {
+        return answers >= minAnswers && answers <= maxAnswers;
+    }
+}
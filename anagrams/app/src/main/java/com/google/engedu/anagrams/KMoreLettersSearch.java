@@ -0,0 +1,164 @@
+/* Copyright 2016 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.engedu.anagrams;
+
+import com.google.engedu.dictionary.LetterSignature;
+import com.google.engedu.dictionary.LongIntHashMap;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Finds the words made of a base word plus 1..k extra letters. The search walks letter
+ * multisets rather than strings, so "ab"+"c" and "ac"+"b" are the same node and each one is
+ * probed once, and each word is listed once.
+ *
+ * As with getAnagrams(word + letters), a word that is just the base word with the extra letters
+ * appended is left out, and a multiset is only extended further if some other word spells it.
+ * The original recursion excluded only the concatenation along its own path, so for k >= 2 it
+ * still listed e.g. "prayer" for "pray" when reached via "pray" + "r" + "e"; here any word that
+ * starts with the base word is left out. None of those are answers AnagramRound accepts, and
+ * for k = 1 the two rules are the same, so the results match getAnagramsWithOneMoreLetter.
+ *
+ * A result limit and a time budget bound the work for large k; {@link #wasTruncated()}
+ * reports whether the last search stopped early. Not thread-safe.
+ */
+public class KMoreLettersSearch {
+
+    public static final int NO_LIMIT = Integer.MAX_VALUE;
+
+    // How many probes run between clock reads
+    private static final int CLOCK_CHECK_INTERVAL = 256;
+
+    private final AnagramDictionary dictionary;
+    private final int[] counts = new int[LetterSignature.ALPHABET_SIZE];
+    private final LongIntHashMap visited = new LongIntHashMap();
+
+    private int resultLimit = NO_LIMIT;
+    private long timeBudgetNanos = Long.MAX_VALUE;
+    // Keyed by base word, since which words are left out depends on its spelling
+    private Map<String, MemoEntry> memo;
+
+    private String baseWord;
+    private List<String> results;
+    private long deadline;
+    private int probes;
+    private boolean truncated;
+
+    private static class MemoEntry {
+        final int k;
+        final String[] results;
+
+        MemoEntry(int k, String[] results) {
+            this.k = k;
+            this.results = results;
+        }
+    }
+
+    public KMoreLettersSearch(AnagramDictionary dictionary) {
+        this.dictionary = dictionary;
+    }
+
+    public void setResultLimit(int resultLimit) {
+        this.resultLimit = resultLimit;
+    }
+
+    public void setTimeBudget(long time, TimeUnit unit) {
+        timeBudgetNanos = unit.toNanos(time);
+    }
+
+    // Keeps the results of up to maxEntries complete searches; 0 turns the memo off
+    public void setMemoSize(final int maxEntries) {
+        if (maxEntries <= 0) {
+            memo = null;
+            return;
+        }
+        memo = new LinkedHashMap<String, MemoEntry>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, MemoEntry> eldest) {
+                return size() > maxEntries;
+            }
+        };
+    }
+
+    public boolean wasTruncated() {
+        return truncated;
+    }
+
+    public List<String> find(String word, int k) {
+        results = new ArrayList<>();
+        truncated = false;
+        if (k <= 0 || !LetterSignature.countLetters(word, counts)) return results;
+
+        MemoEntry cached = memo != null ? memo.get(word) : null;
+        if (cached != null && cached.k == k) {
+            int size = Math.min(cached.results.length, resultLimit);
+            results.addAll(Arrays.asList(cached.results).subList(0, size));
+            truncated = size < cached.results.length;
+            return results;
+        }
+
+        baseWord = word;
+        visited.clear();
+        probes = 0;
+        deadline = System.nanoTime() + timeBudgetNanos;
+        search(LetterSignature.of(counts), k);
+
+        if (memo != null && !truncated) {
+            memo.put(word, new MemoEntry(k, results.toArray(new String[results.size()])));
+        }
+        return results;
+    }
+
+    private void search(long signature, int remaining) {
+        for (int letter = 0; letter < LetterSignature.ALPHABET_SIZE && !truncated; letter++) {
+            long next = LetterSignature.withLetter(signature, letter);
+            if (visited.containsKey(next)) continue;
+            visited.put(next, remaining);
+
+            counts[letter]++;
+            int group = dictionary.findGroup(next, counts);
+            if (group >= 0 && addGroup(group) && remaining > 1) search(next, remaining - 1);
+            counts[letter]--;
+
+            if (++probes % CLOCK_CHECK_INTERVAL == 0 && timeBudgetNanos != Long.MAX_VALUE
+                    && System.nanoTime() - deadline > 0) {
+                truncated = true;
+            }
+        }
+    }
+
+    // Adds the group's words other than baseWord plus the extra letters; false if there are none
+    private boolean addGroup(int group) {
+        boolean any = false;
+        for (int i = 0, size = dictionary.groupSize(group); i < size; i++) {
+            String candidate = dictionary.groupWord(group, i);
+            // Candidates are longer than baseWord, so the rest of such a word is the extra letters
+            if (candidate.startsWith(baseWord)) continue;
+            any = true;
+            if (results.size() >= resultLimit) {
+                truncated = true;
+                return true;
+            }
+            results.add(candidate);
+        }
+        return any;
+    }
+}
@@ -0,0 +1,125 @@
+/* Copyright 2016 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.engedu.anagrams;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Fixed-size latency histogram in the style of HdrHistogram: values below 32 get a bucket each,
+ * larger ones are bucketed by their top five bits, so every bucket is within about 6% of the
+ * values it holds. Recording is O(1) and never allocates. Thread-safe.
+ */
+public class LatencyHistogram {
+
+    private static final int SUB_BUCKET_BITS = 4;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    // Enough buckets for any positive long
+    private static final int BUCKET_COUNT = (63 - SUB_BUCKET_BITS) * SUB_BUCKETS + 2 * SUB_BUCKETS;
+
+    private final long[] counts;
+    private long totalCount;
+    private long totalNanos;
+    private long minNanos = Long.MAX_VALUE;
+    private long maxNanos;
+
+    public LatencyHistogram() {
+        counts = new long[BUCKET_COUNT];
+    }
+
+    private LatencyHistogram(LatencyHistogram other) {
+        counts = other.counts.clone();
+        totalCount = other.totalCount;
+        totalNanos = other.totalNanos;
+        minNanos = other.minNanos;
+        maxNanos = other.maxNanos;
+    }
+
+    private static int bucketOf(long value) {
+        if (value < 2 * SUB_BUCKETS) return (int) value;
+        int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+        return shift * SUB_BUCKETS + (int) (value >>> shift);
+    }
+
+    // Largest value that falls into bucket
+    private static long highestValueIn(int bucket) {
+        if (bucket < 2 * SUB_BUCKETS) return bucket;
+        int shift = bucket / SUB_BUCKETS - 1;
+        long top = bucket % SUB_BUCKETS + SUB_BUCKETS;
+        return ((top + 1) << shift) - 1;
+    }
+
+    public synchronized void record(long nanos) {
+        nanos = Math.max(0, nanos);
+        counts[bucketOf(nanos)]++;
+        totalCount++;
+        totalNanos += nanos;
+        minNanos = Math.min(minNanos, nanos);
+        maxNanos = Math.max(maxNanos, nanos);
+    }
+
+    public synchronized LatencyHistogram copy() {
+        return new LatencyHistogram(this);
+    }
+
+    public synchronized void reset() {
+        Arrays.fill(counts, 0);
+        totalCount = 0;
+        totalNanos = 0;
+        minNanos = Long.MAX_VALUE;
+        maxNanos = 0;
+    }
+
+    public synchronized long getCount() {
+        return totalCount;
+    }
+
+    public synchronized long getMinNanos() {
+        return totalCount == 0 ? 0 : minNanos;
+    }
+
+    public synchronized long getMaxNanos() {
+        return maxNanos;
+    }
+
+    public synchronized long getMeanNanos() {
+        return totalCount == 0 ? 0 : totalNanos / totalCount;
+    }
+
+    // The value at or below which percentile percent of the recorded values fall
+    public synchronized long getPercentileNanos(double percentile) {
+        if (totalCount == 0) return 0;
+        long rank = Math.max(1, (long) Math.ceil(percentile / 100 * totalCount));
+        long seen = 0;
+        for (int bucket = 0; bucket < counts.length; bucket++) {
+            seen += counts[bucket];
+            if (seen >= rank) return Math.min(highestValueIn(bucket), maxNanos);
+        }
+        return maxNanos;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return String.format("n=%d p50=%s p90=%s p99=%s max=%s", totalCount,
+                format(getPercentileNanos(50)), format(getPercentileNanos(90)),
+                format(getPercentileNanos(99)), format(maxNanos));
+    }
+
+    static String format(long nanos) {
+        if (nanos < TimeUnit.MICROSECONDS.toNanos(1)) return nanos + "ns";
+        if (nanos < TimeUnit.MILLISECONDS.toNanos(1)) return String.format("%.1fus", nanos / 1e3);
+        return String.format("%.1fms", nanos / 1e6);
+    }
+}
@@ -0,0 +1,285 @@
+/* Copyright 2016 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.engedu.anagrams;
+
+import com.google.engedu.dictionary.LetterSignature;
+import com.google.engedu.dictionary.LongIntHashMap;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * Lazily lists the ways to spell a phrase's letters as up to maxWords dictionary words.
+ *
+ * The search works on anagram groups rather than words: it subtracts one group's letter
+ * histogram at a time and only picks groups in a fixed order, so each set of groups is
+ * visited once rather than once per permutation. The last word is never searched for; the
+ * signature of the leftover letters is looked up directly. Each group solution is then
+ * expanded into its word combinations one at a time, so only the current path is in memory.
+ */
+public class MultiWordAnagramSearch implements Iterator<List<String>> {
+
+    private final AnagramDictionary dictionary;
+    private final int maxWords;
+
+    // Groups whose letters fit in the phrase, longest first; candidate c is group candidateGroup[c]
+    private final int[] candidateGroup;
+    private final int[][] candidateCounts;
+    private final long[] candidateSignature;
+    private final int[] candidateLength;
+    // Longest candidate at or after c, to cut a level short when the rest cannot fill the letters
+    private final int[] suffixMaxLength;
+    private final LongIntHashMap candidateOfGroup;
+
+    // Search state: the letters still to place and one frame per word
+    private final int[] remaining = new int[LetterSignature.ALPHABET_SIZE];
+    private long remainingSignature;
+    private int remainingLetters;
+    private final int[] chosen;
+    private final int[] nextCandidate;
+    private int depth;
+    private boolean popPending;
+
+    // Word combination of the current group solution
+    private int solutionSize;
+    private final int[] wordIndex;
+    private boolean hasCombination;
+
+    private List<String> next;
+
+    public MultiWordAnagramSearch(AnagramDictionary dictionary, String phrase, int maxWords) {
+        this.dictionary = dictionary;
+        this.maxWords = Math.max(0, maxWords);
+        chosen = new int[this.maxWords];
+        nextCandidate = new int[this.maxWords];
+        wordIndex = new int[this.maxWords];
+
+        // Spaces and punctuation do not count; any other non a-z letter makes the phrase unsolvable
+        StringBuilder letters = new StringBuilder();
+        for (int i = 0; i < phrase.length(); i++) {
+            char ch = Character.toLowerCase(phrase.charAt(i));
+            if (Character.isLetter(ch)) letters.append(ch);
+        }
+        boolean valid = LetterSignature.countLetters(letters, remaining) && letters.length() > 0;
+        remainingSignature = LetterSignature.of(remaining);
+        remainingLetters = letters.length();
+
+        List<Integer> found = new ArrayList<>();
+        if (valid && this.maxWords > 0) {
+            int[] scratch = remaining.clone();
+            for (int group = 0, count = dictionary.groupCount(); group < count; group++) {
+                if (fits(dictionary.groupLetters(group), scratch)) found.add(group);
+            }
+        }
+        final int[] lengths = new int[dictionary.groupCount()];
+        for (int group : found) {
+            lengths[group] = dictionary.groupWordLength(group);
+        }
+        // Longer words first leave fewer letters for the levels below
+        Collections.sort(found, new Comparator<Integer>() {
+            @Override
+            public int compare(Integer a, Integer b) {
+                return lengths[a] != lengths[b] ? lengths[b] - lengths[a] : a - b;
+            }
+        });
+
+        int candidates = found.size();
+        candidateGroup = new int[candidates];
+        candidateCounts = new int[candidates][];
+        candidateSignature = new long[candidates];
+        candidateLength = new int[candidates];
+        suffixMaxLength = new int[candidates + 1];
+        candidateOfGroup = new LongIntHashMap(candidates);
+        for (int c = 0; c < candidates; c++) {
+            int group = found.get(c);
+            CharSequence word = dictionary.groupLetters(group);
+            candidateGroup[c] = group;
+            candidateCounts[c] = new int[LetterSignature.ALPHABET_SIZE];
+            LetterSignature.countLetters(word, candidateCounts[c]);
+            candidateSignature[c] = LetterSignature.of(candidateCounts[c]);
+            candidateLength[c] = word.length();
+            candidateOfGroup.put(group, c);
+        }
+        for (int c = candidates - 1; c >= 0; c--) {
+            suffixMaxLength[c] = Math.max(candidateLength[c], suffixMaxLength[c + 1]);
+        }
+
+        depth = candidates > 0 ? 0 : -1;
+    }
+
+    // True if word can be spelled from available. available is left unchanged.
+    private static boolean fits(CharSequence word, int[] available) {
+        int consumed = 0;
+        boolean fits = true;
+        while (consumed < word.length()) {
+            int letter = word.charAt(consumed) - 'a';
+            if (letter < 0 || letter >= LetterSignature.ALPHABET_SIZE) {
+                fits = false;
+                break;
+            }
+            consumed++;
+            if (--available[letter] < 0) {
+                fits = false;
+                break;
+            }
+        }
+        for (int i = 0; i < consumed; i++) {
+            available[word.charAt(i) - 'a']++;
+        }
+        return fits;
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (next == null) next = computeNext();
+        return next != null;
+    }
+
+    @Override
+    public List<String> next() {
+        if (!hasNext()) throw new NoSuchElementException();
+        List<String> result = next;
+        next = null;
+        return result;
+    }
+
+    @Override
+    public void remove() {
+        throw new UnsupportedOperationException();
+    }
+
+    private List<String> computeNext() {
+        if (hasCombination && advanceCombination()) return combination();
+        hasCombination = false;
+        if (!nextGroupSolution()) return null;
+        Arrays.fill(wordIndex, 0, solutionSize, 0);
+        hasCombination = true;
+        return combination();
+    }
+
+    private List<String> combination() {
+        List<String> words = new ArrayList<>(solutionSize);
+        for (int i = 0; i < solutionSize; i++) {
+            words.add(dictionary.groupWord(candidateGroup[chosen[i]], wordIndex[i]));
+        }
+        return words;
+    }
+
+    // Odometer over the words of each chosen group; a group picked twice in a row takes its
+    // words in non-decreasing order so "eat tea" and "tea eat" are not both listed
+    private boolean advanceCombination() {
+        for (int i = solutionSize - 1; i >= 0; i--) {
+            if (wordIndex[i] + 1 < dictionary.groupSize(candidateGroup[chosen[i]])) {
+                wordIndex[i]++;
+                for (int j = i + 1; j < solutionSize; j++) {
+                    wordIndex[j] = chosen[j] == chosen[j - 1] ? wordIndex[j - 1] : 0;
+                }
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // Moves the search to the next set of groups that uses up the letters exactly
+    private boolean nextGroupSolution() {
+        if (popPending) {
+            restore(chosen[depth]);
+            popPending = false;
+        }
+        while (depth >= 0) {
+            int wordsLeft = maxWords - depth;
+            int lowest = depth == 0 ? 0 : chosen[depth - 1];
+
+            if (wordsLeft == 1) {
+                // The last word must be exactly the leftover letters
+                boolean first = nextCandidate[depth] == lowest;
+                nextCandidate[depth] = candidateGroup.length;
+                if (first) {
+                    int c = lastCandidate();
+                    if (c >= lowest) {
+                        chosen[depth] = c;
+                        solutionSize = depth + 1;
+                        return true;
+                    }
+                }
+                pop();
+                continue;
+            }
+
+            int c = nextCandidate[depth];
+            if (c >= candidateGroup.length || remainingLetters > wordsLeft * suffixMaxLength[c]) {
+                pop();
+                continue;
+            }
+            nextCandidate[depth] = c + 1;
+            if (candidateLength[c] > remainingLetters || !fitsRemaining(c)) continue;
+
+            take(c);
+            chosen[depth] = c;
+            if (remainingLetters == 0) {
+                solutionSize = depth + 1;
+                // Undo this pick before looking for the next solution
+                popPending = true;
+                return true;
+            }
+            depth++;
+            nextCandidate[depth] = c;
+        }
+        return false;
+    }
+
+    // The candidate spelling exactly the remaining letters, or -1
+    private int lastCandidate() {
+        int group = dictionary.findGroup(remainingSignature, remaining);
+        return group < 0 ? -1 : candidateOfGroup.get(group, -1);
+    }
+
+    private void pop() {
+        depth--;
+        if (depth >= 0) restore(chosen[depth]);
+    }
+
+    private boolean fitsRemaining(int c) {
+        int[] counts = candidateCounts[c];
+        for (int i = 0; i < LetterSignature.ALPHABET_SIZE; i++) {
+            if (counts[i] > remaining[i]) return false;
+        }
+        return true;
+    }
+
+    private void take(int c) {
+        int[] counts = candidateCounts[c];
+        for (int i = 0; i < LetterSignature.ALPHABET_SIZE; i++) {
+            remaining[i] -= counts[i];
+        }
+        remainingSignature -= candidateSignature[c];
+        remainingLetters -= candidateLength[c];
+    }
+
+    private void restore(int c) {
+        int[] counts = candidateCounts[c];
+        for (int i = 0; i < LetterSignature.ALPHABET_SIZE; i++) {
+            remaining[i] += counts[i];
+        }
+        remainingSignature += candidateSignature[c];
+        remainingLetters += candidateLength[c];
+    }
+}
@@ -0,0 +1,79 @@
+/* Copyright 2016 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.engedu.anagrams;
+
+import com.google.engedu.dictionary.LetterSignature;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Finds the anagrams of a word plus one extra letter. The base histogram and signature are
+ * computed once; each of the 26 probes bumps one counter and adds one letter weight. The words
+ * found for a set of letters go into the dictionary's result cache, so a replayed starter word
+ * skips the probes.
+ * Not thread-safe: keep one engine per thread.
+ */
+public class OneMoreLetterEngine {
+
+    private final AnagramDictionary dictionary;
+    private final int[] counts = new int[LetterSignature.ALPHABET_SIZE];
+    private final List<String> scratch = new ArrayList<>();
+
+    public OneMoreLetterEngine(AnagramDictionary dictionary) {
+        this.dictionary = dictionary;
+    }
+
+    // Clears out and fills it with the results; returns how many were found
+    public int findAnagrams(String word, List<String> out) {
+        out.clear();
+        if (!LetterSignature.countLetters(word, counts)) return 0;
+
+        long base = LetterSignature.of(counts);
+        AnagramCache cache = dictionary.getOneMoreLetterCache();
+        String[] found = cache.get(base, counts);
+        if (found == null) {
+            found = probe(base);
+            cache.put(base, counts, found);
+        }
+        for (String anagram : found) {
+            // Like getAnagrams(word + ch), leave out word + ch itself
+            if (!isWordPlusLetter(anagram, word)) out.add(anagram);
+        }
+        return out.size();
+    }
+
+    // Every word with the letters in counts plus one more
+    private String[] probe(long base) {
+        scratch.clear();
+        for (int letter = 0; letter < LetterSignature.ALPHABET_SIZE; letter++) {
+            counts[letter]++;
+            int group = dictionary.findGroup(LetterSignature.withLetter(base, letter), counts);
+            counts[letter]--;
+            if (group < 0) continue;
+
+            for (int i = 0, size = dictionary.groupSize(group); i < size; i++) {
+                scratch.add(dictionary.groupWord(group, i));
+            }
+        }
+        return scratch.toArray(new String[scratch.size()]);
+    }
+
+    // candidate has one letter more than word, so if it starts with word the rest is that letter
+    private static boolean isWordPlusLetter(String candidate, String word) {
+        return candidate.length() == word.length() + 1 && candidate.startsWith(word);
+    }
+}
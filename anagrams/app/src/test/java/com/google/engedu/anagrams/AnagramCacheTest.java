@@ -0,0 +1,144 @@
+/* Copyright 2016 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.engedu.anagrams;
+
+import com.google.engedu.dictionary.LetterSignature;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks AnagramCache's least-recently-used eviction and its hit, miss and eviction counts, and
+ * that AnagramDictionary's cache size knob reaches its caches.
+ */
+public class AnagramCacheTest {
+
+    @Test
+    public void evicts_leastRecentlyUsedFirst() {
+        AnagramCache cache = new AnagramCache(3);
+        put(cache, "a");
+        put(cache, "b");
+        put(cache, "c");
+        // Using "a" makes "b" the eldest
+        assertNotNull(get(cache, "a"));
+        put(cache, "d");
+        assertNull(get(cache, "b"));
+        assertNotNull(get(cache, "a"));
+        assertNotNull(get(cache, "c"));
+        assertNotNull(get(cache, "d"));
+        // Now "a" is the eldest again
+        put(cache, "e");
+        assertNull(get(cache, "a"));
+        assertEquals(3, cache.getStats().getSize());
+    }
+
+    @Test
+    public void stats_countHitsMissesAndEvictions() {
+        AnagramCache cache = new AnagramCache(2);
+        assertNull(get(cache, "ab"));
+        put(cache, "ab");
+        assertArrayEquals(new String[] {"ab"}, get(cache, "ab"));
+        assertNotNull(get(cache, "ba"));
+        put(cache, "abc");
+        put(cache, "abcd");
+        assertNull(get(cache, "ab"));
+
+        AnagramCache.Stats stats = cache.getStats();
+        assertEquals(2, stats.getHits());
+        assertEquals(2, stats.getMisses());
+        assertEquals(1, stats.getEvictions());
+        assertEquals(2, stats.getSize());
+        assertEquals(0.5, stats.getHitRate(), 0);
+
+        AnagramCache.Stats total = stats.plus(stats);
+        assertEquals(4, total.getHits());
+        assertEquals(4, total.getSize());
+
+        cache.clear();
+        stats = cache.getStats();
+        assertEquals(0, stats.getHits() + stats.getMisses() + stats.getEvictions() + stats.getSize());
+        assertEquals(0, stats.getHitRate(), 0);
+    }
+
+    @Test
+    public void otherLetters_withTheSameSignature_miss() {
+        AnagramCache cache = new AnagramCache(4);
+        int[] counts = new int[LetterSignature.ALPHABET_SIZE];
+        counts[0] = 1;
+        cache.put(7L, counts, new String[] {"a"});
+        int[] other = new int[LetterSignature.ALPHABET_SIZE];
+        other[1] = 1;
+        assertNull(cache.get(7L, other));
+        // The cache kept its own copy of the counts
+        counts[0] = 2;
+        other[0] = 1;
+        other[1] = 0;
+        assertNotNull(cache.get(7L, other));
+    }
+
+    @Test
+    public void setMaxEntries_shrinksOldestFirstAndZeroTurnsCachingOff() {
+        AnagramCache cache = new AnagramCache(4);
+        put(cache, "a");
+        put(cache, "b");
+        put(cache, "c");
+        put(cache, "d");
+        cache.setMaxEntries(2);
+        assertEquals(2, cache.getMaxEntries());
+        assertEquals(2, cache.getStats().getEvictions());
+        assertNull(get(cache, "a"));
+        assertNull(get(cache, "b"));
+        assertNotNull(get(cache, "c"));
+
+        cache.setMaxEntries(0);
+        put(cache, "e");
+        assertNull(get(cache, "e"));
+        assertEquals(0, cache.getStats().getSize());
+    }
+
+    @Test
+    public void dictionary_cacheSizeReachesItsCaches() throws IOException {
+        AnagramDictionary dictionary = new AnagramDictionary(
+                new StringReader("post\npots\nspot\nstop\ntops\nopts\nstops\nposts\n"));
+        dictionary.getAnagrams("stop");
+        dictionary.getAnagrams("stop");
+        assertEquals(1, dictionary.getCacheStats().getHits());
+
+        dictionary.setCacheSize(0);
+        dictionary.getAnagrams("stop");
+        dictionary.getAnagrams("stop");
+        AnagramCache.Stats stats = dictionary.getCacheStats();
+        assertEquals(1, stats.getHits());
+        assertEquals(0, stats.getSize());
+    }
+
+    // Caches the word under its own letters, as AnagramDictionary caches groups
+    private static void put(AnagramCache cache, String word) {
+        int[] counts = new int[LetterSignature.ALPHABET_SIZE];
+        LetterSignature.countLetters(word, counts);
+        cache.put(LetterSignature.of(counts), counts, new String[] {word});
+    }
+
+    private static String[] get(AnagramCache cache, String word) {
+        int[] counts = new int[LetterSignature.ALPHABET_SIZE];
+        LetterSignature.countLetters(word, counts);
+        return cache.get(LetterSignature.of(counts), counts);
+    }
+}
@@ -0,0 +1,169 @@
+/* Copyright 2016 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.engedu.anagrams;
+
+import com.google.engedu.dictionary.LetterSignature;
+import com.google.engedu.dictionary.WordStore;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeSet;
+
+import static org.junit.Assert.*;
+
+/**
+ * Writes an index, reads it back with AnagramIndex.wrap and checks it against the WordStore the
+ * words came from, and the answer counts against a scan of every word.
+ */
+public class AnagramIndexTest {
+
+    private List<String> words;
+    private String wordList;
+    private WordStore store;
+
+    @Before
+    public void setUp() throws IOException {
+        // Random words over a few letters, so there are many anagram groups and extensions
+        Random random = new Random(5);
+        TreeSet<String> unique = new TreeSet<>(Arrays.asList("caf\u00e9", "x-ray", "stop", "post", "spot"));
+        while (unique.size() < 3000) {
+            StringBuilder word = new StringBuilder();
+            for (int length = 1 + random.nextInt(6); word.length() < length; ) {
+                word.append((char) ('a' + random.nextInt(6)));
+            }
+            unique.add(word.toString());
+        }
+        words = new ArrayList<>(unique);
+        StringBuilder list = new StringBuilder();
+        for (String word : words) {
+            list.append(word).append('\n');
+        }
+        // Repeats must not change the index
+        list.append("stop\npost\n");
+        wordList = list.toString();
+        store = WordStore.read(new StringReader(wordList));
+    }
+
+    @Test
+    public void allWritePaths_giveTheSameBytes() throws IOException {
+        AnagramIndexWriter sink = new AnagramIndexWriter();
+        for (String word : wordList.split("\n")) {
+            sink.accept(word);
+        }
+        ByteArrayOutputStream fromSink = new ByteArrayOutputStream();
+        sink.writeTo(fromSink);
+
+        ByteArrayOutputStream fromReader = new ByteArrayOutputStream();
+        AnagramIndexWriter.write(new StringReader(wordList), fromReader);
+
+        ByteBuffer direct = AnagramIndexWriter.writeDirect(store);
+        byte[] fromStore = new byte[direct.remaining()];
+        direct.get(fromStore);
+
+        assertArrayEquals(fromSink.toByteArray(), fromReader.toByteArray());
+        assertArrayEquals(fromSink.toByteArray(), fromStore);
+    }
+
+    @Test
+    public void index_matchesWordStore() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        AnagramIndexWriter.writeTo(store, out);
+        AnagramIndex index = AnagramIndex.wrap(ByteBuffer.wrap(out.toByteArray()));
+
+        assertEquals(store.size(), index.getWordCount());
+        assertEquals(store.groupCount(), index.getGroupCount());
+        long previous = Long.MIN_VALUE;
+        for (int group = 0; group < index.getGroupCount(); group++) {
+            List<String> members = index.getGroupWords(group);
+            long signature = LetterSignature.of(members.get(0));
+            assertTrue("signatures must ascend", group == 0 || signature > previous);
+            previous = signature;
+            assertEquals(group, index.findGroup(signature));
+
+            int storeGroup = store.groupOf(members.get(0));
+            List<String> expected = new ArrayList<>();
+            for (int i = 0; i < store.groupSize(storeGroup); i++) {
+                expected.add(store.groupWord(storeGroup, i));
+            }
+            assertEquals(expected, members);
+            for (int i = 0; i < members.size(); i++) {
+                int wordIndex = index.getGroupStart(group) + i;
+                assertEquals(members.get(i), index.getWord(wordIndex));
+                assertEquals(members.get(i), index.getWordView(wordIndex).toString());
+                assertEquals(members.get(i).length(), index.getWordLength(wordIndex));
+                assertTrue(index.contains(members.get(i)));
+                assertEquals(members.get(i), answers(members.get(i)), index.getAnswerCount(wordIndex));
+            }
+        }
+        assertFalse(index.contains("zzz"));
+    }
+
+    @Test
+    public void indexBackend_answersLikeWordStoreBackend() throws IOException {
+        AnagramDictionary fromStore = new AnagramDictionary(store);
+        AnagramDictionary fromIndex = new AnagramDictionary(AnagramIndex.pack(new StringReader(wordList)));
+        for (int i = 0; i < words.size(); i += 7) {
+            String word = words.get(i);
+            assertEquals(new HashSet<>(fromStore.getAnagrams(word)), new HashSet<>(fromIndex.getAnagrams(word)));
+            assertEquals(new HashSet<>(fromStore.getAnagramsWithOneMoreLetter(word)),
+                    new HashSet<>(fromIndex.getAnagramsWithOneMoreLetter(word)));
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void wrap_rejectsOtherData() throws IOException {
+        AnagramIndex.wrap(ByteBuffer.wrap(new byte[32]));
+    }
+
+    // One-more-letter words the game accepts for word, by scanning every word; like the rest of
+    // the game, only a-z count as letters
+    private int answers(String word) {
+        if (!word.matches("[a-z]*")) return 0;
+        String letters = sortLetters(word);
+        int count = 0;
+        for (String candidate : words) {
+            if (candidate.length() == word.length() + 1 && candidate.matches("[a-z]*")
+                    && AnagramRound.accepts(word, candidate)
+                    && isOneLetterMore(letters, sortLetters(candidate))) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    // True if longer is shorter with one letter inserted; both are sorted
+    private static boolean isOneLetterMore(String shorter, String longer) {
+        int i = 0;
+        while (i < shorter.length() && shorter.charAt(i) == longer.charAt(i)) i++;
+        return shorter.substring(i).equals(longer.substring(i + 1));
+    }
+
+    private static String sortLetters(String word) {
+        char[] letters = word.toCharArray();
+        Arrays.sort(letters);
+        return new String(letters);
+    }
+}
@@ -0,0 +1,44 @@
+/* Copyright 2016 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.engedu.anagrams;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks that the queries the game makes are recorded once metrics are turned on.
+ */
+public class DictionaryMetricsTest {
+
+    @Test
+    public void guesses_areRecordedAsIsGoodWord() throws IOException {
+        AnagramDictionary dictionary = new AnagramDictionary(new StringReader("stop\nspot\npost\nstops\nposts\n"));
+        DictionaryMetrics metrics = new DictionaryMetrics();
+        dictionary.setMetrics(metrics);
+        assertTrue(metrics.snapshot().getPhaseNanos().containsKey("starters"));
+
+        AnagramRound round = dictionary.startRound("spot");
+        assertTrue(dictionary.markFound(round, "stops"));
+        assertFalse(dictionary.markFound(round, "stops"));
+        assertFalse(dictionary.markFound(round, "spots"));
+        LatencyHistogram guesses = metrics.snapshot().getLatencies().get(DictionaryMetrics.IS_GOOD_WORD);
+        assertEquals(3, guesses.getCount());
+    }
+}
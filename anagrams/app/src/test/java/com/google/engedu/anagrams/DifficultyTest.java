@@ -0,0 +1,113 @@
+/* Copyright 2016 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.engedu.anagrams;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks the Difficulty buckets at their boundaries, and that pickStarterWord only deals starters
+ * from the asked-for bucket, on a word list whose starters have exactly the boundary counts.
+ */
+public class DifficultyTest {
+
+    // Starter words and how many answers each is given; 2 is too few for any bucket
+    private static final String[] BASES = {"bcd", "fgh", "jkl", "mnp", "qrs", "tvw"};
+    private static final int[] ANSWERS = {2, 3, 7, 8, 14, 15};
+
+    private String wordList;
+
+    @Before
+    public void setUp() {
+        StringBuilder list = new StringBuilder();
+        for (int b = 0; b < BASES.length; b++) {
+            list.append(BASES[b]).append('\n');
+            for (String answer : answers(BASES[b], ANSWERS[b])) {
+                list.append(answer).append('\n');
+            }
+        }
+        wordList = list.toString();
+    }
+
+    @Test
+    public void buckets_splitAtTheirBoundaries() {
+        assertBucket(null, 0);
+        assertBucket(null, 2);
+        assertBucket(Difficulty.HARD, 3);
+        assertBucket(Difficulty.HARD, 7);
+        assertBucket(Difficulty.MEDIUM, 8);
+        assertBucket(Difficulty.MEDIUM, 14);
+        assertBucket(Difficulty.EASY, 15);
+        assertBucket(Difficulty.EASY, Integer.MAX_VALUE);
+    }
+
+    @Test
+    public void pickStarterWord_staysInItsBucket() throws IOException {
+        checkPicks(new AnagramDictionary(new StringReader(wordList)));
+        checkPicks(new AnagramDictionary(AnagramIndex.pack(new StringReader(wordList))));
+    }
+
+    private void checkPicks(AnagramDictionary dictionary) {
+        for (int b = 0; b < BASES.length; b++) {
+            assertEquals(BASES[b], ANSWERS[b], dictionary.startRound(BASES[b]).getAnswerCount());
+        }
+        assertEquals(new HashSet<>(Arrays.asList("fgh", "jkl")), picks(dictionary, Difficulty.HARD));
+        assertEquals(new HashSet<>(Arrays.asList("mnp", "qrs")), picks(dictionary, Difficulty.MEDIUM));
+        assertEquals(new HashSet<>(Arrays.asList("tvw")), picks(dictionary, Difficulty.EASY));
+    }
+
+    private static Set<String> picks(AnagramDictionary dictionary, Difficulty difficulty) {
+        Set<String> picked = new HashSet<>();
+        for (int i = 0; i < 200; i++) {
+            picked.add(dictionary.pickStarterWord(difficulty));
+        }
+        return picked;
+    }
+
+    private static void assertBucket(Difficulty expected, int answers) {
+        for (Difficulty level : Difficulty.values()) {
+            assertEquals(level + " for " + answers, level == expected, level.accepts(answers));
+        }
+    }
+
+    // The first count orderings of base's letters plus 'z' that the game accepts as answers
+    private static List<String> answers(String base, int count) {
+        List<String> answers = new ArrayList<>();
+        String letters = base + "z";
+        for (int i = 0; i < 4 && answers.size() < count; i++) {
+            for (int j = 0; j < 4 && answers.size() < count; j++) {
+                for (int k = 0; k < 4 && answers.size() < count; k++) {
+                    int l = 6 - i - j - k;
+                    if (i == j || j == k || i == k) continue;
+                    String word = "" + letters.charAt(i) + letters.charAt(j) + letters.charAt(k) + letters.charAt(l);
+                    if (AnagramRound.accepts(base, word)) answers.add(word);
+                }
+            }
+        }
+        assertEquals(count, answers.size());
+        return answers;
+    }
+}
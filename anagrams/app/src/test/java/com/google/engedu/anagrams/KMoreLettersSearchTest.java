@@ -0,0 +1,163 @@
+/* Copyright 2016 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.engedu.anagrams;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks the k-more-letters search against a level-by-level scan of every word: a word is found
+ * if it is the base word plus 1..k letters, does not start with the base word, and each smaller
+ * letter multiset on the way to it is spelled by some word that does not start with the base word.
+ */
+public class KMoreLettersSearchTest {
+
+    private static final String[] FIXED = {"pray", "prays", "spray", "payer", "repay", "prayer", "yapper"};
+
+    private List<String> words;
+    private AnagramDictionary dictionary;
+
+    @Before
+    public void setUp() throws IOException {
+        Random random = new Random(13);
+        TreeSet<String> unique = new TreeSet<>(Arrays.asList(FIXED));
+        while (unique.size() < 3000) {
+            StringBuilder word = new StringBuilder();
+            for (int length = 1 + random.nextInt(7); word.length() < length; ) {
+                word.append((char) ('a' + random.nextInt(5)));
+            }
+            unique.add(word.toString());
+        }
+        words = new ArrayList<>(unique);
+        StringBuilder list = new StringBuilder();
+        for (String word : words) {
+            list.append(word).append('\n');
+        }
+        dictionary = new AnagramDictionary(new StringReader(list.toString()));
+    }
+
+    @Test
+    public void search_matchesScan() {
+        Random random = new Random(19);
+        for (int i = 0; i < 150; i++) {
+            String base = words.get(random.nextInt(words.size()));
+            if (base.length() > 4) base = base.substring(0, 1 + random.nextInt(4));
+            for (int k = 1; k <= 3; k++) {
+                assertEquals(base + " + " + k, bruteForce(base, k), search(base, k));
+            }
+        }
+    }
+
+    @Test
+    public void search_leavesOutWordsStartingWithTheBase() {
+        // "prays" and "prayer" start with "pray"; "yapper" is reached through "payer" and "repay"
+        assertEquals(new HashSet<>(Arrays.asList("spray", "payer", "repay")), search("pray", 1));
+        assertEquals(new HashSet<>(Arrays.asList("spray", "payer", "repay", "yapper")), search("pray", 2));
+        assertEquals(bruteForce("pray", 2), search("pray", 2));
+    }
+
+    @Test
+    public void oneMoreLetter_matchesGetAnagramsWithOneMoreLetter() {
+        for (int i = 0; i < words.size(); i += 37) {
+            String base = words.get(i);
+            assertEquals(base, new HashSet<>(dictionary.getAnagramsWithOneMoreLetter(base)), search(base, 1));
+        }
+    }
+
+    @Test
+    public void resultLimit_returnsAPrefixAndReportsTruncation() {
+        String base = "ab";
+        Set<String> all = search(base, 3);
+        assertTrue(all.size() > 5);
+        for (int limit : new int[] {1, 5, all.size(), all.size() + 1}) {
+            List<String> limited = dictionary.getAnagramsWithAtLeastKMoreLetters(base, 3, limit,
+                    Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+            assertEquals(Math.min(limit, all.size()), limited.size());
+            assertTrue(all.containsAll(limited));
+            assertEquals(limit < all.size(), dictionary.wasKMoreLettersSearchTruncated());
+        }
+        // A memoized full search answers a later limited call too
+        search(base, 3);
+        assertEquals(2, dictionary.getAnagramsWithAtLeastKMoreLetters(base, 3, 2,
+                Long.MAX_VALUE, TimeUnit.NANOSECONDS).size());
+        assertTrue(dictionary.wasKMoreLettersSearchTruncated());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void zeroK_isRejected() {
+        dictionary.getAnagramsWithAtLeastKMoreLetters("ab", 0);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void zeroResultLimit_isRejected() {
+        dictionary.getAnagramsWithAtLeastKMoreLetters("ab", 2, 0, Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+    }
+
+    // The search's results as a set; fails if a word is listed twice
+    private Set<String> search(String base, int k) {
+        List<String> found = dictionary.getAnagramsWithAtLeastKMoreLetters(base, k);
+        assertFalse(dictionary.wasKMoreLettersSearchTruncated());
+        Set<String> unique = new HashSet<>(found);
+        assertEquals("listed twice", found.size(), unique.size());
+        return unique;
+    }
+
+    private Set<String> bruteForce(String base, int k) {
+        Set<String> found = new HashSet<>();
+        // Sorted letters of the multisets that may be extended, one level at a time
+        Set<String> level = new HashSet<>(Arrays.asList(sortLetters(base)));
+        for (int step = 1; step <= k && !level.isEmpty(); step++) {
+            Set<String> next = new HashSet<>();
+            for (String word : words) {
+                String letters = sortLetters(word);
+                if (word.length() == base.length() + step && !word.startsWith(base)
+                        && extendsOneOf(letters, level)) {
+                    found.add(word);
+                    next.add(letters);
+                }
+            }
+            level = next;
+        }
+        return found;
+    }
+
+    // True if dropping one of the sorted letters gives a multiset in level
+    private static boolean extendsOneOf(String letters, Set<String> level) {
+        for (int i = 0; i < letters.length(); i++) {
+            if (level.contains(letters.substring(0, i) + letters.substring(i + 1))) return true;
+        }
+        return false;
+    }
+
+    private static String sortLetters(String word) {
+        char[] letters = word.toCharArray();
+        Arrays.sort(letters);
+        return new String(letters);
+    }
+}
@@ -0,0 +1,144 @@
+/* Copyright 2016 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.engedu.anagrams;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks the multi-word search against trying every multiset of up to maxWords words.
+ */
+public class MultiWordAnagramSearchTest {
+
+    private static final String[] WORDS = {
+            "a", "an", "as", "at", "ta", "no", "on", "so", "to",
+            "ant", "nat", "tan", "ate", "eat", "eta", "tea", "net", "ten", "eon", "one", "toe", "sat", "set",
+            "ante", "etna", "neat", "east", "seat", "teas", "nose", "ones", "note", "tone",
+            "opts", "post", "pots", "spot", "stop", "tops",
+            "notes", "onset", "stone", "tones",
+    };
+
+    private AnagramDictionary dictionary;
+
+    @Before
+    public void setUp() throws IOException {
+        StringBuilder list = new StringBuilder();
+        for (String word : WORDS) {
+            list.append(word).append('\n');
+        }
+        dictionary = new AnagramDictionary(new StringReader(list.toString()));
+    }
+
+    @Test
+    public void search_findsEveryWordMultisetOnce() {
+        Random random = new Random(7);
+        for (int i = 0; i < 200; i++) {
+            StringBuilder phrase = new StringBuilder();
+            for (int words = 1 + random.nextInt(3); words > 0; words--) {
+                phrase.append(WORDS[random.nextInt(WORDS.length)]);
+            }
+            int maxWords = 1 + random.nextInt(4);
+            assertEquals(phrase + " in " + maxWords, bruteForce(phrase.toString(), maxWords),
+                    search(phrase.toString(), maxWords));
+        }
+    }
+
+    @Test
+    public void search_ignoresSpacesAndPunctuation() {
+        assertEquals(search("eattea", 2), search("Eat, tea!", 2));
+        assertTrue(search("eattea", 2).contains("eat tea"));
+    }
+
+    @Test
+    public void search_findsNothingForOtherLetters() {
+        assertFalse(dictionary.findMultiWordAnagrams("te\u00e9", 3).hasNext());
+        assertFalse(dictionary.findMultiWordAnagrams("", 3).hasNext());
+        assertFalse(dictionary.findMultiWordAnagrams("tea", 0).hasNext());
+    }
+
+    // Each result as its words sorted and joined by spaces; fails if one is listed twice
+    private Set<String> search(String phrase, int maxWords) {
+        Set<String> found = new HashSet<>();
+        Iterator<List<String>> results = dictionary.findMultiWordAnagrams(phrase, maxWords);
+        while (results.hasNext()) {
+            List<String> words = new ArrayList<>(results.next());
+            assertTrue(words.size() <= maxWords);
+            Collections.sort(words);
+            assertTrue("listed twice: " + words, found.add(join(words)));
+        }
+        return found;
+    }
+
+    private static Set<String> bruteForce(String phrase, int maxWords) {
+        String[] words = WORDS.clone();
+        Arrays.sort(words);
+        int[] counts = new int[26];
+        for (int i = 0; i < phrase.length(); i++) counts[phrase.charAt(i) - 'a']++;
+        Set<String> found = new HashSet<>();
+        pick(words, 0, counts, phrase.length(), maxWords, new ArrayList<String>(), found);
+        return found;
+    }
+
+    // Picks words in non-decreasing order, so each multiset is tried once
+    private static void pick(String[] words, int from, int[] counts, int lettersLeft, int wordsLeft,
+                             List<String> chosen, Set<String> found) {
+        if (lettersLeft == 0) {
+            if (!chosen.isEmpty()) found.add(join(chosen));
+            return;
+        }
+        if (wordsLeft == 0) return;
+        for (int w = from; w < words.length; w++) {
+            if (take(words[w], counts, -1)) {
+                chosen.add(words[w]);
+                pick(words, w, counts, lettersLeft - words[w].length(), wordsLeft - 1, chosen, found);
+                chosen.remove(chosen.size() - 1);
+            }
+            take(words[w], counts, 1);
+        }
+    }
+
+    // Adds delta to the count of each of word's letters; true if none went negative
+    private static boolean take(String word, int[] counts, int delta) {
+        boolean fits = true;
+        for (int i = 0; i < word.length(); i++) {
+            counts[word.charAt(i) - 'a'] += delta;
+            if (counts[word.charAt(i) - 'a'] < 0) fits = false;
+        }
+        return fits;
+    }
+
+    private static String join(List<String> words) {
+        StringBuilder joined = new StringBuilder();
+        for (String word : words) {
+            if (joined.length() > 0) joined.append(' ');
+            joined.append(word);
+        }
+        return joined.toString();
+    }
+}
@@ -0,0 +1,63 @@
+/* Copyright 2016 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.engedu.anagrams;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks that pickGoodStarterWord picks each word of a group with more than MIN_NUM_ANAGRAMS
+ * words about equally often, whatever the size of its group, and throws if there is none.
+ */
+public class StarterWordTest {
+
+    @Test
+    public void starters_areUniformPerWord() throws IOException {
+        // A group of 6 and a group of 12: picking per group would give each "opt" word twice
+        // the share of a "aelst" word
+        String[] small = {"post", "pots", "spot", "stop", "tops", "opts"};
+        String[] large = {"least", "slate", "stale", "steal", "tales", "teals",
+                "setal", "stela", "taels", "tesla", "salet", "astel"};
+        StringBuilder list = new StringBuilder("cat\nact\ndog\n");
+        for (String word : small) list.append(word).append('\n');
+        for (String word : large) list.append(word).append('\n');
+        AnagramDictionary dictionary = new AnagramDictionary(new StringReader(list.toString()));
+
+        Map<String, Integer> picks = new HashMap<>();
+        int rounds = 18000;
+        for (int i = 0; i < rounds; i++) {
+            String word = dictionary.pickGoodStarterWord();
+            Integer count = picks.get(word);
+            picks.put(word, count == null ? 1 : count + 1);
+        }
+        assertEquals(small.length + large.length, picks.size());
+        int expected = rounds / picks.size();
+        for (Map.Entry<String, Integer> pick : picks.entrySet()) {
+            assertTrue(pick.toString(), Math.abs(pick.getValue() - expected) < expected / 4);
+        }
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void noGoodStarter_throws() throws IOException {
+        new AnagramDictionary(new StringReader("cat\nact\ntac\ndog\n")).pickGoodStarterWord();
+    }
+}
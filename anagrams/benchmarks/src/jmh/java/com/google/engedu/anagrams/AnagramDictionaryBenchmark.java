@@ -0,0 +1,110 @@
+/* Copyright 2016 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.engedu.anagrams;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Query costs of AnagramDictionary on each backend: "words" parses words.txt into a
+ * WordStore, "index" reads the precompiled anagram index, "packed" builds that index from
+ * words.txt into a direct buffer. LoadBenchmark measures opening each backend.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class AnagramDictionaryBenchmark {
+
+    @Param({"words", "index", "packed"})
+    public String backend;
+
+    @Param({"post", "stop", "tea"})
+    public String word;
+
+    // Entries per result cache; 0 measures every lookup uncached
+    @Param({"128", "0"})
+    public int cacheSize;
+
+    String guess;
+    AnagramDictionary dictionary;
+    OneMoreLetterEngine engine;
+    List<String> results = new ArrayList<>();
+
+    static String readWordList() throws IOException {
+        byte[] bytes = Files.readAllBytes(Paths.get(System.getProperty("words.file", "words.txt")));
+        return new String(bytes, Charset.forName("UTF-8"));
+    }
+
+    @Setup
+    public void setUp() throws IOException {
+        String wordList = readWordList();
+        dictionary = LoadBenchmark.open(backend, wordList, LoadBenchmark.writeIndex(wordList));
+        dictionary.setCacheSize(cacheSize);
+        engine = new OneMoreLetterEngine(dictionary);
+        // A guess the game would accept, so isGoodWord does the full dictionary check
+        guess = dictionary.getAnagramsWithOneMoreLetter(word).get(0);
+    }
+
+    @Benchmark
+    public List<String> getAnagrams() {
+        return dictionary.getAnagrams(word);
+    }
+
+    @Benchmark
+    public List<String> getAnagramsWithOneMoreLetter() {
+        return dictionary.getAnagramsWithOneMoreLetter(word);
+    }
+
+    @Benchmark
+    public int oneMoreLetterEngine() {
+        return engine.findAnagrams(word, results);
+    }
+
+    @Benchmark
+    public String pickGoodStarterWord() {
+        return dictionary.pickGoodStarterWord();
+    }
+
+    @Benchmark
+    public boolean isGoodWord() {
+        return dictionary.isGoodWord(guess, word);
+    }
+
+    @State(Scope.Benchmark)
+    public static class KMoreLetters {
+        @Param({"1", "2", "3"})
+        public int k;
+    }
+
+    @Benchmark
+    public List<String> getAnagramsWithAtLeastKMoreLetters(KMoreLetters state) {
+        return dictionary.getAnagramsWithAtLeastKMoreLetters(word, state.k);
+    }
+}
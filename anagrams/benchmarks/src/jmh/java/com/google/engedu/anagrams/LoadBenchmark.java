@@ -0,0 +1,76 @@
+/* Copyright 2016 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.engedu.anagrams;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Opening AnagramDictionary on each backend, as in AnagramDictionaryBenchmark. Kept apart from
+ * that class so the load is not repeated for each of its query words and cache sizes.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class LoadBenchmark {
+
+    @Param({"words", "index", "packed"})
+    public String backend;
+
+    String wordList;
+    byte[] indexBytes;
+
+    @Setup
+    public void setUp() throws IOException {
+        // Keep file I/O out of the measurements
+        wordList = AnagramDictionaryBenchmark.readWordList();
+        indexBytes = writeIndex(wordList);
+    }
+
+    @Benchmark
+    public AnagramDictionary load() throws IOException {
+        return open(backend, wordList, indexBytes);
+    }
+
+    static byte[] writeIndex(String wordList) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        AnagramIndexWriter.write(new StringReader(wordList), out);
+        return out.toByteArray();
+    }
+
+    static AnagramDictionary open(String backend, String wordList, byte[] indexBytes) throws IOException {
+        switch (backend) {
+            case "index":
+                return new AnagramDictionary(AnagramIndex.wrap(ByteBuffer.wrap(indexBytes)));
+            case "packed":
+                return new AnagramDictionary(AnagramIndex.pack(new StringReader(wordList)));
+            default:
+                return new AnagramDictionary(new StringReader(wordList));
+        }
+    }
+}
@@ -0,0 +1,125 @@
+/* Copyright 2016 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.engedu.anagrams;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Wildcard and blank-tile queries through the DAWG against a naive scan of every word.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class PatternBenchmark {
+
+    private static final int LIMIT = Integer.MAX_VALUE;
+
+    String[] words;
+    AnagramDictionary dictionary;
+
+    @Setup
+    public void setUp() throws IOException {
+        String wordList = AnagramDictionaryBenchmark.readWordList();
+        List<String> lines = new ArrayList<>();
+        for (String line : wordList.split("\n")) {
+            if (!line.trim().isEmpty()) lines.add(line.trim());
+        }
+        words = lines.toArray(new String[lines.size()]);
+        dictionary = new AnagramDictionary(new StringReader(wordList));
+        // Build the word graph outside the measurements
+        dictionary.findMatches("a", 1);
+    }
+
+    @State(Scope.Benchmark)
+    public static class Wildcards {
+        @Param({"a?t*", "??e??", "*ing", "s*t*r"})
+        public String pattern;
+    }
+
+    @State(Scope.Benchmark)
+    public static class Rack {
+        @Param({"tea", "stop"})
+        public String letters;
+
+        @Param({"1", "2"})
+        public int blanks;
+    }
+
+    @Benchmark
+    public List<String> matchGraph(Wildcards state) {
+        return dictionary.findMatches(state.pattern, LIMIT);
+    }
+
+    @Benchmark
+    public List<String> matchScan(Wildcards state) {
+        List<String> out = new ArrayList<>();
+        for (String word : words) {
+            if (globMatches(state.pattern, 0, word, 0)) out.add(word);
+        }
+        return out;
+    }
+
+    @Benchmark
+    public List<String> blanksGraph(Rack state) {
+        return dictionary.findAnagramsWithBlanks(state.letters, state.blanks, LIMIT);
+    }
+
+    @Benchmark
+    public List<String> blanksScan(Rack state) {
+        List<String> out = new ArrayList<>();
+        for (String word : words) {
+            if (usesRackWithBlanks(word, state.letters, state.blanks)) out.add(word);
+        }
+        return out;
+    }
+
+    static boolean globMatches(String pattern, int p, String word, int w) {
+        if (p == pattern.length()) return w == word.length();
+        char ch = pattern.charAt(p);
+        if (ch == '*') {
+            for (int skip = w; skip <= word.length(); skip++) {
+                if (globMatches(pattern, p + 1, word, skip)) return true;
+            }
+            return false;
+        }
+        return w < word.length() && (ch == '?' || ch == word.charAt(w)) && globMatches(pattern, p + 1, word, w + 1);
+    }
+
+    static boolean usesRackWithBlanks(String word, String letters, int blanks) {
+        int extra = word.length() - letters.length();
+        if (extra < 0 || extra > blanks) return false;
+        StringBuilder rest = new StringBuilder(word);
+        for (int i = 0; i < letters.length(); i++) {
+            int at = rest.indexOf(String.valueOf(letters.charAt(i)));
+            if (at < 0) return false;
+            rest.deleteCharAt(at);
+        }
+        return true;
+    }
+}
@@ -0,0 +1,479 @@
+/* Copyright 2016 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.engedu.dictionary;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Minimal deterministic acyclic word graph: a trie whose identical suffixes are shared. It is
+ * built once (Daciuk et al.'s incremental algorithm over sorted input) and then frozen into a
+ * few primitive arrays, so there is no object per word or per node.
+ *
+ * Each node also records how many words lie below it, which gives rank (a word's position in
+ * alphabetical order) and select (the word at a position) in O(word length * alphabet), and
+ * the longest word suffix below it, which lets wildcard, blank-tile and split queries drop
+ * branches that are too short.
+ */
+public class Dawg {
+
+    private static final int ROOT = 0;
+    // Pattern positions are tracked in a long, with one bit for the end of the pattern
+    private static final int MAX_PATTERN_LENGTH = 63;
+
+    // Edges of node n are [edgeStart[n], edgeStart[n + 1]), sorted by label
+    private final int[] edgeStart;
+    private final char[] edgeLabel;
+    private final int[] edgeTarget;
+    // Number of words spelled from node n onwards, counting n itself if it is terminal
+    private final int[] wordCount;
+    // Most letters on any path from node n to the end of a word
+    private final int[] maxDepth;
+    private final boolean[] terminal;
+
+    private Dawg(int[] edgeStart, char[] edgeLabel, int[] edgeTarget, int[] wordCount, int[] maxDepth,
+                 boolean[] terminal) {
+        this.edgeStart = edgeStart;
+        this.edgeLabel = edgeLabel;
+        this.edgeTarget = edgeTarget;
+        this.wordCount = wordCount;
+        this.maxDepth = maxDepth;
+        this.terminal = terminal;
+    }
+
+    public static Dawg build(Collection<String> words) {
+        String[] sorted = words.toArray(new String[words.size()]);
+        Arrays.sort(sorted);
+        Builder builder = new Builder();
+        String previous = null;
+        for (String word : sorted) {
+            if (!word.equals(previous)) builder.insert(word);
+            previous = word;
+        }
+        return builder.finish();
+    }
+
+    public int size() {
+        return wordCount[ROOT];
+    }
+
+    public int nodeCount() {
+        return terminal.length;
+    }
+
+    public int edgeCount() {
+        return edgeLabel.length;
+    }
+
+    public boolean contains(CharSequence word) {
+        int node = walk(word);
+        return node >= 0 && terminal[node];
+    }
+
+    // Position of word among all words in alphabetical order, or -1 if it is not present
+    public int rank(CharSequence word) {
+        int node = ROOT;
+        int rank = 0;
+        for (int i = 0; i < word.length(); i++) {
+            if (terminal[node]) rank++;
+            char ch = word.charAt(i);
+            int next = -1;
+            for (int e = edgeStart[node]; e < edgeStart[node + 1]; e++) {
+                if (edgeLabel[e] == ch) {
+                    next = edgeTarget[e];
+                    break;
+                }
+                rank += wordCount[edgeTarget[e]];
+            }
+            if (next < 0) return -1;
+            node = next;
+        }
+        return terminal[node] ? rank : -1;
+    }
+
+    // The word at the given alphabetical position
+    public String select(int rank) {
+        if (rank < 0 || rank >= size()) {
+            throw new IndexOutOfBoundsException("rank " + rank + ", size " + size());
+        }
+        StringBuilder word = new StringBuilder();
+        int node = ROOT;
+        while (true) {
+            if (terminal[node]) {
+                if (rank == 0) return word.toString();
+                rank--;
+            }
+            for (int e = edgeStart[node]; e < edgeStart[node + 1]; e++) {
+                int below = wordCount[edgeTarget[e]];
+                if (rank < below) {
+                    word.append(edgeLabel[e]);
+                    node = edgeTarget[e];
+                    break;
+                }
+                rank -= below;
+            }
+        }
+    }
+
+    public int countWithPrefix(CharSequence prefix) {
+        int node = walk(prefix);
+        return node >= 0 ? wordCount[node] : 0;
+    }
+
+    // Words starting with prefix in alphabetical order, at most limit of them
+    public List<String> wordsWithPrefix(String prefix, int limit) {
+        List<String> out = new ArrayList<>();
+        int node = walk(prefix);
+        if (node >= 0 && limit > 0) {
+            collect(node, new StringBuilder(prefix), out, limit);
+        }
+        return out;
+    }
+
+    private void collect(int node, StringBuilder word, List<String> out, int limit) {
+        if (terminal[node]) out.add(word.toString());
+        for (int e = edgeStart[node]; e < edgeStart[node + 1] && out.size() < limit; e++) {
+            word.append(edgeLabel[e]);
+            collect(edgeTarget[e], word, out, limit);
+            word.setLength(word.length() - 1);
+        }
+    }
+
+    /**
+     * Words matching a pattern in which '?' stands for any one letter and '*' for any run of
+     * letters, including none; every other character matches itself. Words come out in
+     * alphabetical order, at most limit of them.
+     *
+     * The pattern runs as a small NFA alongside the graph walk: each node carries the set of
+     * pattern positions it could be at, as a bit mask, so a word is reached at most once and a
+     * branch stops as soon as no position is left or the rest of the pattern needs more letters
+     * than the branch has.
+     */
+    public List<String> match(String pattern, int limit) {
+        if (pattern.length() > MAX_PATTERN_LENGTH) {
+            throw new IllegalArgumentException("Pattern longer than " + MAX_PATTERN_LENGTH + ": " + pattern);
+        }
+        // Letters still needed from each position onwards
+        int[] needed = new int[pattern.length() + 1];
+        for (int i = pattern.length() - 1; i >= 0; i--) {
+            needed[i] = needed[i + 1] + (pattern.charAt(i) == '*' ? 0 : 1);
+        }
+        List<String> out = new ArrayList<>();
+        long start = closure(pattern, 1L);
+        if (limit > 0) matchFrom(ROOT, start, pattern, needed, new StringBuilder(), out, limit);
+        return out;
+    }
+
+    private void matchFrom(int node, long states, String pattern, int[] needed, StringBuilder word,
+                           List<String> out, int limit) {
+        if ((states & (1L << pattern.length())) != 0 && terminal[node]) out.add(word.toString());
+        if (leastNeeded(states, needed) > maxDepth[node]) return;
+        for (int e = edgeStart[node]; e < edgeStart[node + 1] && out.size() < limit; e++) {
+            long next = step(pattern, states, edgeLabel[e]);
+            if (next == 0) continue;
+            word.append(edgeLabel[e]);
+            matchFrom(edgeTarget[e], next, pattern, needed, word, out, limit);
+            word.setLength(word.length() - 1);
+        }
+    }
+
+    // Pattern positions reachable from states by reading ch
+    private static long step(String pattern, long states, char ch) {
+        long next = 0;
+        for (long rest = states; rest != 0; rest &= rest - 1) {
+            int pos = Long.numberOfTrailingZeros(rest);
+            if (pos == pattern.length()) continue;
+            char p = pattern.charAt(pos);
+            if (p == '*') {
+                next |= 1L << pos;
+            } else if (p == '?' || p == ch) {
+                next |= 1L << (pos + 1);
+            }
+        }
+        return closure(pattern, next);
+    }
+
+    // Adds the positions after every '*' in states, since '*' may match nothing
+    private static long closure(String pattern, long states) {
+        for (int pos = 0; pos < pattern.length(); pos++) {
+            if ((states & (1L << pos)) != 0 && pattern.charAt(pos) == '*') states |= 1L << (pos + 1);
+        }
+        return states;
+    }
+
+    private static int leastNeeded(long states, int[] needed) {
+        int least = Integer.MAX_VALUE;
+        for (long rest = states; rest != 0; rest &= rest - 1) {
+            least = Math.min(least, needed[Long.numberOfTrailingZeros(rest)]);
+        }
+        return least;
+    }
+
+    /**
+     * Words that use every one of letters plus up to blanks more letters of any kind, like a
+     * rack with blank tiles, in alphabetical order and at most limit of them. A letter on an
+     * edge is taken from the rack when the rack has it and only otherwise costs a blank.
+     */
+    public List<String> anagramsWithBlanks(String letters, int blanks, int limit) {
+        // The rack as its distinct letters, sorted for binary search, and a count for each
+        char[] sorted = letters.toCharArray();
+        Arrays.sort(sorted);
+        char[] rackLetters = new char[sorted.length];
+        int[] rackCounts = new int[sorted.length];
+        int distinct = 0;
+        for (int i = 0; i < sorted.length; i++) {
+            if (distinct == 0 || rackLetters[distinct - 1] != sorted[i]) rackLetters[distinct++] = sorted[i];
+            rackCounts[distinct - 1]++;
+        }
+        rackLetters = Arrays.copyOf(rackLetters, distinct);
+
+        List<String> out = new ArrayList<>();
+        if (limit > 0) {
+            anagramsFrom(ROOT, rackLetters, rackCounts, letters.length(), blanks, new StringBuilder(), out, limit);
+        }
+        return out;
+    }
+
+    private void anagramsFrom(int node, char[] rackLetters, int[] rackCounts, int lettersLeft, int blanks,
+                              StringBuilder word, List<String> out, int limit) {
+        if (lettersLeft == 0 && terminal[node]) out.add(word.toString());
+        if (lettersLeft > maxDepth[node]) return;
+        for (int e = edgeStart[node]; e < edgeStart[node + 1] && out.size() < limit; e++) {
+            int slot = Arrays.binarySearch(rackLetters, edgeLabel[e]);
+            word.append(edgeLabel[e]);
+            if (slot >= 0 && rackCounts[slot] > 0) {
+                rackCounts[slot]--;
+                anagramsFrom(edgeTarget[e], rackLetters, rackCounts, lettersLeft - 1, blanks, word, out, limit);
+                rackCounts[slot]++;
+            } else if (blanks > 0) {
+                anagramsFrom(edgeTarget[e], rackLetters, rackCounts, lettersLeft, blanks - 1, word, out, limit);
+            }
+            word.setLength(word.length() - 1);
+        }
+    }
+
+    /**
+     * Every way to deal the letters of shuffled, keeping their order, into two words of the
+     * graph, at most limit of them. Each pair of words is listed once, as {first, second}, where
+     * first is the word that takes shuffled's first letter.
+     *
+     * The search moves one letter at a time with both words as graph nodes, so a word that can
+     * no longer be finished is abandoned at once. The outcome from a point depends only on the
+     * position and the two nodes, so points that lead nowhere are remembered and not searched
+     * again.
+     */
+    public List<String[]> splits(CharSequence shuffled, int limit) {
+        List<String[]> out = new ArrayList<>();
+        if (shuffled.length() < 2 || limit <= 0) return out;
+        int first = child(ROOT, shuffled.charAt(0));
+        if (first < 0) return out;
+        StringBuilder firstWord = new StringBuilder().append(shuffled.charAt(0));
+        splitsFrom(shuffled, 1, first, ROOT, firstWord, new StringBuilder(), new HashSet<Long>(),
+                new HashSet<String>(), out, limit);
+        return out;
+    }
+
+    // True if some split was found from this point
+    private boolean splitsFrom(CharSequence shuffled, int pos, int first, int second, StringBuilder firstWord,
+                               StringBuilder secondWord, Set<Long> dead, Set<String> seen, List<String[]> out,
+                               int limit) {
+        if (pos == shuffled.length()) {
+            if (!terminal[first] || !terminal[second] || secondWord.length() == 0) return false;
+            String[] pair = {firstWord.toString(), secondWord.toString()};
+            if (seen.add(pair[0] + " " + pair[1])) out.add(pair);
+            return true;
+        }
+        long key = ((long) first * terminal.length + second) * (shuffled.length() + 1) + pos;
+        if (dead.contains(key)) return false;
+        boolean found = false;
+        if (shuffled.length() - pos <= maxDepth[first] + maxDepth[second]) {
+            char ch = shuffled.charAt(pos);
+            int next = child(first, ch);
+            if (next >= 0) {
+                firstWord.append(ch);
+                found = splitsFrom(shuffled, pos + 1, next, second, firstWord, secondWord, dead, seen, out, limit);
+                firstWord.setLength(firstWord.length() - 1);
+            }
+            next = out.size() < limit ? child(second, ch) : -1;
+            if (next >= 0) {
+                secondWord.append(ch);
+                found |= splitsFrom(shuffled, pos + 1, first, next, firstWord, secondWord, dead, seen, out, limit);
+                secondWord.setLength(secondWord.length() - 1);
+            }
+        }
+        if (!found) dead.add(key);
+        return found;
+    }
+
+    // Node reached by spelling s from the root, or -1
+    private int walk(CharSequence s) {
+        int node = ROOT;
+        for (int i = 0; i < s.length() && node >= 0; i++) {
+            node = child(node, s.charAt(i));
+        }
+        return node;
+    }
+
+    private int child(int node, char ch) {
+        for (int e = edgeStart[node]; e < edgeStart[node + 1]; e++) {
+            if (edgeLabel[e] == ch) return edgeTarget[e];
+            if (edgeLabel[e] > ch) break;
+        }
+        return -1;
+    }
+
+    private static class BuildNode {
+        boolean terminal;
+        final List<Character> labels = new ArrayList<>(2);
+        final List<BuildNode> targets = new ArrayList<>(2);
+        int id = -1;
+
+        // Children are already minimized when this is called, so comparing them by identity is enough
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof BuildNode)) return false;
+            BuildNode other = (BuildNode) o;
+            if (terminal != other.terminal || !labels.equals(other.labels)) return false;
+            for (int i = 0; i < targets.size(); i++) {
+                if (targets.get(i) != other.targets.get(i)) return false;
+            }
+            return true;
+        }
+
+        @Override
+        public int hashCode() {
+            int h = terminal ? 1 : 0;
+            for (int i = 0; i < labels.size(); i++) {
+                h = 31 * h + labels.get(i);
+                h = 31 * h + System.identityHashCode(targets.get(i));
+            }
+            return h;
+        }
+    }
+
+    private static class Builder {
+        private final BuildNode root = new BuildNode();
+        private final Map<BuildNode, BuildNode> register = new HashMap<>();
+        // The path of the last inserted word that has not been minimized yet
+        private final List<BuildNode> unchecked = new ArrayList<>();
+        private String previous = "";
+
+        void insert(String word) {
+            int common = 0;
+            int max = Math.min(word.length(), previous.length());
+            while (common < max && word.charAt(common) == previous.charAt(common)) {
+                common++;
+            }
+            minimize(common);
+
+            BuildNode node = unchecked.isEmpty() ? root : unchecked.get(unchecked.size() - 1);
+            for (int i = common; i < word.length(); i++) {
+                BuildNode next = new BuildNode();
+                node.labels.add(word.charAt(i));
+                node.targets.add(next);
+                unchecked.add(next);
+                node = next;
+            }
+            node.terminal = true;
+            previous = word;
+        }
+
+        // Replaces the unchecked nodes below depth downTo with their registered equivalents
+        private void minimize(int downTo) {
+            for (int depth = unchecked.size() - 1; depth >= downTo; depth--) {
+                BuildNode child = unchecked.remove(depth);
+                BuildNode parent = depth == 0 ? root : unchecked.get(depth - 1);
+                BuildNode existing = register.get(child);
+                if (existing != null) {
+                    parent.targets.set(parent.targets.size() - 1, existing);
+                } else {
+                    register.put(child, child);
+                }
+            }
+        }
+
+        Dawg finish() {
+            minimize(0);
+
+            // Number nodes breadth first from the root, then lay their edges out in that order
+            List<BuildNode> nodes = new ArrayList<>();
+            root.id = 0;
+            nodes.add(root);
+            int edges = 0;
+            for (int i = 0; i < nodes.size(); i++) {
+                BuildNode node = nodes.get(i);
+                edges += node.targets.size();
+                for (BuildNode target : node.targets) {
+                    if (target.id < 0) {
+                        target.id = nodes.size();
+                        nodes.add(target);
+                    }
+                }
+            }
+
+            int[] edgeStart = new int[nodes.size() + 1];
+            char[] edgeLabel = new char[edges];
+            int[] edgeTarget = new int[edges];
+            boolean[] terminal = new boolean[nodes.size()];
+            int e = 0;
+            for (int i = 0; i < nodes.size(); i++) {
+                BuildNode node = nodes.get(i);
+                edgeStart[i] = e;
+                terminal[i] = node.terminal;
+                for (int j = 0; j < node.targets.size(); j++) {
+                    edgeLabel[e] = node.labels.get(j);
+                    edgeTarget[e] = node.targets.get(j).id;
+                    e++;
+                }
+            }
+            edgeStart[nodes.size()] = e;
+
+            int[] wordCount = new int[nodes.size()];
+            Arrays.fill(wordCount, -1);
+            countWords(ROOT, edgeStart, edgeTarget, terminal, wordCount);
+            int[] maxDepth = new int[nodes.size()];
+            Arrays.fill(maxDepth, -1);
+            measureDepth(ROOT, edgeStart, edgeTarget, maxDepth);
+            return new Dawg(edgeStart, edgeLabel, edgeTarget, wordCount, maxDepth, terminal);
+        }
+
+        private static int measureDepth(int node, int[] edgeStart, int[] edgeTarget, int[] maxDepth) {
+            if (maxDepth[node] >= 0) return maxDepth[node];
+            int depth = 0;
+            for (int e = edgeStart[node]; e < edgeStart[node + 1]; e++) {
+                depth = Math.max(depth, 1 + measureDepth(edgeTarget[e], edgeStart, edgeTarget, maxDepth));
+            }
+            maxDepth[node] = depth;
+            return depth;
+        }
+
+        private static int countWords(int node, int[] edgeStart, int[] edgeTarget, boolean[] terminal, int[] wordCount) {
+            if (wordCount[node] >= 0) return wordCount[node];
+            int count = terminal[node] ? 1 : 0;
+            for (int e = edgeStart[node]; e < edgeStart[node + 1]; e++) {
+                count += countWords(edgeTarget[e], edgeStart, edgeTarget, terminal, wordCount);
+            }
+            wordCount[node] = count;
+            return count;
+        }
+    }
+}
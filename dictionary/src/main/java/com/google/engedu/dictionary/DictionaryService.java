@@ -0,0 +1,223 @@
+/* Copyright 2016 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.engedu.dictionary;
+
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Process-wide owner of the word list. The first {@link #load} reads the source on a worker
+ * thread into a {@link WordStore}; every later call (another activity, a recreated one) shares
+ * that load or its result instead of parsing the file again. Later calls must ask for the same
+ * words, that is pass an equal filter.
+ *
+ * Listener calls run on the executor passed in with the listener.
+ */
+public class DictionaryService {
+
+    public interface Listener {
+        // Words as they are read, before the store is built. Only sent while the source is being read;
+        // a listener added partway through first gets the batches read so far.
+        void onWordsRead(List<String> batch);
+
+        void onDictionaryReady(WordStore store);
+
+        void onDictionaryFailed(Exception e);
+    }
+
+    private static final int BATCH_SIZE = 256;
+    private static final DictionaryService INSTANCE = new DictionaryService();
+
+    private final ExecutorService worker = Executors.newSingleThreadExecutor(new ThreadFactory() {
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r, "DictionaryService");
+            thread.setDaemon(true);
+            return thread;
+        }
+    });
+
+    private final List<Registration> registrations = new ArrayList<>();
+    private Future<WordStore> load;
+    private WordFilter loadFilter;
+    // Batches sent so far by the running load, replayed to listeners added after them
+    private final List<List<String>> readBatches = new ArrayList<>();
+
+    private static class Registration {
+        final Listener listener;
+        final Executor executor;
+
+        Registration(Listener listener, Executor executor) {
+            this.listener = listener;
+            this.executor = executor;
+        }
+    }
+
+    public static DictionaryService getInstance() {
+        return INSTANCE;
+    }
+
+    // Starts loading from source unless a load already ran or is running; either way listener
+    // (if not null) hears about the result. The returned Future can also be waited on.
+    public Future<WordStore> load(Callable<Reader> source, Executor callbackExecutor, Listener listener) {
+        return load(source, null, callbackExecutor, listener);
+    }
+
+    // As above, but only words that filter accepts are read into the store and sent in batches.
+    // Throws IllegalArgumentException if a load with a different filter already ran or is running,
+    // since its store would not hold the words asked for.
+    public synchronized Future<WordStore> load(Callable<Reader> source, WordFilter filter,
+                                               Executor callbackExecutor, Listener listener) {
+        if (load != null && !(filter == null ? loadFilter == null : filter.equals(loadFilter))) {
+            throw new IllegalArgumentException("The word list was loaded with another filter");
+        }
+        Registration registration = null;
+        if (listener != null) {
+            registration = new Registration(listener, callbackExecutor);
+            registrations.add(registration);
+        }
+        if (load == null) {
+            loadFilter = filter;
+            load = worker.submit(readTask(source, filter));
+        } else if (load.isDone()) {
+            if (listener != null) notifyDone(load);
+        } else if (registration != null) {
+            for (List<String> batch : readBatches) {
+                sendBatch(registration, batch);
+            }
+        }
+        return load;
+    }
+
+    public Future<WordStore> load(Callable<Reader> source) {
+        return load(source, null, null);
+    }
+
+    public synchronized void removeListener(Listener listener) {
+        for (int i = registrations.size() - 1; i >= 0; i--) {
+            if (registrations.get(i).listener == listener) registrations.remove(i);
+        }
+    }
+
+    private Callable<WordStore> readTask(final Callable<Reader> source, final WordFilter filter) {
+        return new Callable<WordStore>() {
+            @Override
+            public WordStore call() throws Exception {
+                try {
+                    WordStore.Builder builder = new WordStore.Builder();
+                    BatchSink batches = new BatchSink();
+                    WordPipeline pipeline = new WordPipeline(source).to(builder).to(batches);
+                    if (filter != null) pipeline.filter(filter);
+                    pipeline.run();
+                    batches.flush();
+                    return builder.build();
+                } finally {
+                    // Nothing replaces load while it is still running, so this is our own Future.
+                    // The notification runs after it is complete, so listeners see the final state.
+                    final Future<WordStore> finished = finishReading();
+                    worker.execute(new Runnable() {
+                        @Override
+                        public void run() {
+                            notifyDone(finished);
+                        }
+                    });
+                }
+            }
+        };
+    }
+
+    // Hands words to the listeners BATCH_SIZE at a time
+    private class BatchSink implements WordSink {
+        private List<String> batch = new ArrayList<>(BATCH_SIZE);
+
+        @Override
+        public void accept(String word) {
+            batch.add(word);
+            if (batch.size() == BATCH_SIZE) flush();
+        }
+
+        void flush() {
+            publishBatch(batch);
+            batch = new ArrayList<>(BATCH_SIZE);
+        }
+    }
+
+    private synchronized void publishBatch(List<String> batch) {
+        if (batch.isEmpty()) return;
+        readBatches.add(batch);
+        for (Registration registration : registrations) {
+            sendBatch(registration, batch);
+        }
+    }
+
+    private static void sendBatch(final Registration registration, final List<String> batch) {
+        registration.executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                registration.listener.onWordsRead(batch);
+            }
+        });
+    }
+
+    // No more batches will come, so they need not be kept for replay
+    private synchronized Future<WordStore> finishReading() {
+        readBatches.clear();
+        return load;
+    }
+
+    // Delivers the finished load to every registered listener, then forgets them. A load() call
+    // may have done this already, and a failed load may have been retried since; then finished
+    // is no longer the current load and there is nothing left to do.
+    private synchronized void notifyDone(Future<WordStore> finished) {
+        if (finished == null || finished != load) return;
+        WordStore store = null;
+        Exception error = null;
+        try {
+            store = finished.get();
+        } catch (ExecutionException e) {
+            error = e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+        } catch (InterruptedException e) {
+            error = e;
+        }
+        final WordStore result = store;
+        final Exception failure = error;
+        for (final Registration registration : registrations) {
+            registration.executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    if (failure == null) {
+                        registration.listener.onDictionaryReady(result);
+                    } else {
+                        registration.listener.onDictionaryFailed(failure);
+                    }
+                }
+            });
+        }
+        registrations.clear();
+        if (failure != null) {
+            // Let a later call retry
+            load = null;
+        }
+    }
+}
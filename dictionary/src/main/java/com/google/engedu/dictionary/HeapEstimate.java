@@ -0,0 +1,47 @@
+/* Copyright 2016 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.engedu.dictionary;
+
+/**
+ * Rough retained-size arithmetic for the dictionary structures, assuming a 64-bit runtime
+ * with compressed references: 12 byte object headers, 16 byte array headers, 8 byte alignment.
+ * Good for comparing structures, not for exact accounting.
+ */
+public class HeapEstimate {
+
+    public static final int REFERENCE = 4;
+    private static final int OBJECT_HEADER = 12;
+    private static final int ARRAY_HEADER = 16;
+
+    private HeapEstimate() {
+    }
+
+    public static long array(long length, int elementBytes) {
+        return align(ARRAY_HEADER + length * elementBytes);
+    }
+
+    // A String and its character array, counting two bytes per character
+    public static long string(int length) {
+        return align(OBJECT_HEADER + REFERENCE + 8) + array(length, 2);
+    }
+
+    public static long object(int fieldBytes) {
+        return align(OBJECT_HEADER + fieldBytes);
+    }
+
+    private static long align(long bytes) {
+        return (bytes + 7) & ~7L;
+    }
+}
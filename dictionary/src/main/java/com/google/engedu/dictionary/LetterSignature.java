@@ -0,0 +1,116 @@
+/* Copyright 2016 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.engedu.dictionary;
+
+/**
+ * Order-independent 64-bit signature of a word's letters: the sum of a fixed random weight
+ * per letter. Anagrams share a signature, adding or removing a letter is a single add or
+ * subtract, and nothing is allocated. Distinct letter multisets can collide in principle,
+ * so lookups confirm a hit with {@link #matches}.
+ */
+public final class LetterSignature {
+
+    public static final int ALPHABET_SIZE = 26;
+
+    private static final long[] LETTER_WEIGHTS = new long[ALPHABET_SIZE];
+
+    static {
+        for (int i = 0; i < ALPHABET_SIZE; i++) {
+            LETTER_WEIGHTS[i] = weight((char) ('a' + i));
+        }
+    }
+
+    private LetterSignature() {
+    }
+
+    // SplitMix64 finalizer, so every char (including accented ones) gets a well-mixed weight
+    private static long weight(char ch) {
+        long z = ch + 0x9E3779B97F4A7C15L;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    public static long of(CharSequence word) {
+        long signature = 0;
+        for (int i = 0; i < word.length(); i++) {
+            char ch = word.charAt(i);
+            int letter = ch - 'a';
+            signature += letter >= 0 && letter < ALPHABET_SIZE ? LETTER_WEIGHTS[letter] : weight(ch);
+        }
+        return signature;
+    }
+
+    public static long withLetter(long signature, int letter) {
+        return signature + LETTER_WEIGHTS[letter];
+    }
+
+    public static long withoutLetter(long signature, int letter) {
+        return signature - LETTER_WEIGHTS[letter];
+    }
+
+    public static long of(int[] counts) {
+        long signature = 0;
+        for (int i = 0; i < ALPHABET_SIZE; i++) {
+            signature += counts[i] * LETTER_WEIGHTS[i];
+        }
+        return signature;
+    }
+
+    // Fills counts with the a-z histogram of word; false if word has any other character
+    public static boolean countLetters(CharSequence word, int[] counts) {
+        for (int i = 0; i < ALPHABET_SIZE; i++) {
+            counts[i] = 0;
+        }
+        for (int i = 0; i < word.length(); i++) {
+            int letter = word.charAt(i) - 'a';
+            if (letter < 0 || letter >= ALPHABET_SIZE) return false;
+            counts[letter]++;
+        }
+        return true;
+    }
+
+    // True if word uses exactly the letters in counts. counts is left unchanged.
+    public static boolean matches(CharSequence word, int[] counts) {
+        int length = word.length();
+        int consumed = 0;
+        boolean match = true;
+        while (consumed < length) {
+            int letter = word.charAt(consumed) - 'a';
+            if (letter < 0 || letter >= ALPHABET_SIZE) {
+                match = false;
+                break;
+            }
+            consumed++;
+            if (--counts[letter] < 0) {
+                match = false;
+                break;
+            }
+        }
+        if (match) {
+            for (int i = 0; i < ALPHABET_SIZE; i++) {
+                if (counts[i] != 0) {
+                    match = false;
+                    break;
+                }
+            }
+        }
+        for (int i = 0; i < consumed; i++) {
+            counts[word.charAt(i) - 'a']++;
+        }
+        return match;
+    }
+}
@@ -0,0 +1,139 @@
+/* Copyright 2016 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.engedu.dictionary;
+
+import java.util.Arrays;
+
+/**
+ * Open-addressing long to int map with linear probing. No boxing and no per-entry objects,
+ * so lookups never allocate.
+ */
+public class LongIntHashMap {
+
+    private static final long FREE_KEY = 0;
+    private static final int MIN_CAPACITY = 16;
+
+    private long[] keys;
+    private int[] values;
+    private int mask;
+    private int size;
+
+    // FREE_KEY marks empty slots, so a real 0 key is kept on the side
+    private boolean hasFreeKey;
+    private int freeKeyValue;
+
+    public LongIntHashMap() {
+        this(MIN_CAPACITY);
+    }
+
+    public LongIntHashMap(int expectedSize) {
+        allocate(capacityFor(expectedSize));
+    }
+
+    private static int capacityFor(int expectedSize) {
+        int capacity = MIN_CAPACITY;
+        // Keep the load factor at or below one half
+        while (capacity < 2 * expectedSize) {
+            capacity <<= 1;
+        }
+        return capacity;
+    }
+
+    private void allocate(int capacity) {
+        keys = new long[capacity];
+        values = new int[capacity];
+        mask = capacity - 1;
+    }
+
+    private int slot(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32)) & mask;
+    }
+
+    public int get(long key, int missingValue) {
+        if (key == FREE_KEY) {
+            return hasFreeKey ? freeKeyValue : missingValue;
+        }
+        int i = slot(key);
+        while (keys[i] != FREE_KEY) {
+            if (keys[i] == key) return values[i];
+            i = (i + 1) & mask;
+        }
+        return missingValue;
+    }
+
+    public boolean containsKey(long key) {
+        if (key == FREE_KEY) return hasFreeKey;
+        int i = slot(key);
+        while (keys[i] != FREE_KEY) {
+            if (keys[i] == key) return true;
+            i = (i + 1) & mask;
+        }
+        return false;
+    }
+
+    public void put(long key, int value) {
+        if (key == FREE_KEY) {
+            if (!hasFreeKey) size++;
+            hasFreeKey = true;
+            freeKeyValue = value;
+            return;
+        }
+        int i = slot(key);
+        while (keys[i] != FREE_KEY) {
+            if (keys[i] == key) {
+                values[i] = value;
+                return;
+            }
+            i = (i + 1) & mask;
+        }
+        keys[i] = key;
+        values[i] = value;
+        if (++size * 2 > keys.length) {
+            rehash(keys.length << 1);
+        }
+    }
+
+    private void rehash(int capacity) {
+        long[] oldKeys = keys;
+        int[] oldValues = values;
+        allocate(capacity);
+        for (int j = 0; j < oldKeys.length; j++) {
+            long key = oldKeys[j];
+            if (key == FREE_KEY) continue;
+            int i = slot(key);
+            while (keys[i] != FREE_KEY) {
+                i = (i + 1) & mask;
+            }
+            keys[i] = key;
+            values[i] = oldValues[j];
+        }
+    }
+
+    public void clear() {
+        Arrays.fill(keys, FREE_KEY);
+        hasFreeKey = false;
+        size = 0;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public long estimateBytes() {
+        return HeapEstimate.object(32) + HeapEstimate.array(keys.length, 8) + HeapEstimate.array(values.length, 4);
+    }
+}
@@ -0,0 +1,57 @@
+/* Copyright 2016 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.engedu.dictionary;
+
+/**
+ * Common {@link WordFilter}s.
+ */
+public class WordFilters {
+
+    private WordFilters() {
+    }
+
+    // Filters for the same range are equal, so DictionaryService can tell a repeated load from
+    // one that asks for other words
+    public static WordFilter lengthBetween(int min, int max) {
+        return new LengthBetween(min, max);
+    }
+
+    private static class LengthBetween implements WordFilter {
+        private final int min;
+        private final int max;
+
+        LengthBetween(int min, int max) {
+            this.min = min;
+            this.max = max;
+        }
+
+        @Override
+        public boolean accept(String word) {
+            return word.length() >= min && word.length() <= max;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof LengthBetween)) return false;
+            LengthBetween other = (LengthBetween) o;
+            return min == other.min && max == other.max;
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * min + max;
+        }
+    }
+}
@@ -0,0 +1,91 @@
+/* Copyright 2016 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.engedu.dictionary;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+
+/**
+ * Reads a word list in one streaming pass: source, then normalization, then filters, then
+ * sinks. Each word goes straight from the line it was read on to every sink, so a consumer
+ * builds only what it keeps (for example a {@link WordStore.Builder} of five-letter words)
+ * and no list of the whole file is ever held.
+ *
+ * Lines are trimmed and blank ones skipped. Repeats are passed on; {@link WordStore.Builder}
+ * drops them when it sorts.
+ */
+public class WordPipeline {
+
+    private final Callable<Reader> source;
+    private final List<WordFilter> filters = new ArrayList<>();
+    private final List<WordSink> sinks = new ArrayList<>();
+
+    public WordPipeline(Callable<Reader> source) {
+        this.source = source;
+    }
+
+    public WordPipeline filter(WordFilter filter) {
+        filters.add(filter);
+        return this;
+    }
+
+    public WordPipeline to(WordSink sink) {
+        sinks.add(sink);
+        return this;
+    }
+
+    // Streams the whole source through; returns how many words reached the sinks
+    public int run() throws IOException {
+        int count = 0;
+        try (BufferedReader in = new BufferedReader(open())) {
+            String line;
+            while ((line = in.readLine()) != null) {
+                String word = normalize(line);
+                if (word == null || !passes(word)) continue;
+                for (WordSink sink : sinks) {
+                    sink.accept(word);
+                }
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private Reader open() throws IOException {
+        try {
+            return source.call();
+        } catch (IOException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new IOException("Could not open word source", e);
+        }
+    }
+
+    private String normalize(String line) {
+        String word = line.trim();
+        return word.isEmpty() ? null : word;
+    }
+
+    private boolean passes(String word) {
+        for (WordFilter filter : filters) {
+            if (!filter.accept(word)) return false;
+        }
+        return true;
+    }
+}
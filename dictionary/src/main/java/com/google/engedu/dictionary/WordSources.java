@@ -0,0 +1,68 @@
+/* Copyright 2016 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.engedu.dictionary;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.Charset;
+import java.util.concurrent.Callable;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Word list sources for {@link WordPipeline} and {@link DictionaryService}. All of them read
+ * UTF-8 text with one word per line. On Android, pass {@link #stream} a Callable that opens the
+ * asset.
+ */
+public class WordSources {
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private WordSources() {
+    }
+
+    public static Callable<Reader> stream(final Callable<InputStream> opener) {
+        return new Callable<Reader>() {
+            @Override
+            public Reader call() throws Exception {
+                return new InputStreamReader(opener.call(), UTF_8);
+            }
+        };
+    }
+
+    // A gzip-compressed word list
+    public static Callable<Reader> gzip(final Callable<InputStream> opener) {
+        return new Callable<Reader>() {
+            @Override
+            public Reader call() throws Exception {
+                return new InputStreamReader(new GZIPInputStream(opener.call()), UTF_8);
+            }
+        };
+    }
+
+    // A plain or, if its name ends in .gz, gzip-compressed word list file
+    public static Callable<Reader> file(final File file) {
+        Callable<InputStream> opener = new Callable<InputStream>() {
+            @Override
+            public InputStream call() throws IOException {
+                return new FileInputStream(file);
+            }
+        };
+        return file.getName().endsWith(".gz") ? gzip(opener) : stream(opener);
+    }
+}
@@ -0,0 +1,429 @@
+/* Copyright 2016 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.engedu.dictionary;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Immutable word list held as one sorted String array plus a few int arrays; there are no
+ * per-word collection entries. Words are ordered by length, then alphabetically, and each word
+ * is identified by its position in that order.
+ *
+ * Views: words of a given length (a slice, nothing copied), random words and pairs of a given
+ * length, membership (binary search within the word's length), two-word splits of a short
+ * string of letters and anagram groups keyed by {@link LetterSignature}.
+ */
+public class WordStore {
+
+    private static final Comparator<String> LENGTH_ORDER = new Comparator<String>() {
+        @Override
+        public int compare(String a, String b) {
+            return a.length() != b.length() ? a.length() - b.length() : a.compareTo(b);
+        }
+    };
+
+    // Words per unit of work when building the anagram groups
+    private static final int CHUNK_SIZE = 4096;
+
+    private final String[] words;
+    // Words of length L are [lengthStart[L], lengthStart[L + 1])
+    private final int[] lengthStart;
+
+    private final LongIntHashMap signatureToGroup;
+    // Members of group g are groupMembers[groupStart[g]] .. groupMembers[groupStart[g + 1] - 1]
+    private final int[] groupStart;
+    private final int[] groupMembers;
+
+    // How long each build phase took, in nanoseconds; see getLoadTimings
+    private long readNanos;
+    private long sortNanos;
+    private long indexNanos;
+
+    // Collects words straight into the array the store will sort, growing it by doubling
+    public static class Builder implements WordSink {
+        private String[] words = new String[1024];
+        private int count;
+        // Words are added while the source is read, so the time up to build() is the read phase
+        private final long created = System.nanoTime();
+
+        public Builder add(String word) {
+            if (count == words.length) words = Arrays.copyOf(words, count * 2);
+            words[count++] = word;
+            return this;
+        }
+
+        @Override
+        public void accept(String word) {
+            add(word);
+        }
+
+        public WordStore build() throws IOException {
+            return build(null);
+        }
+
+        // Builds the anagram groups on pool, or on the calling thread if pool is null.
+        // Either way the result is identical.
+        public WordStore build(ForkJoinPool pool) throws IOException {
+            return build(pool, CHUNK_SIZE);
+        }
+
+        // Tests use small chunks, so inputs span many chunks and end in a partial one
+        WordStore build(ForkJoinPool pool, int chunkSize) throws IOException {
+            long sortStart = System.nanoTime();
+            // Sorted and deduplicated in place; the store gets a copy trimmed to the unique words
+            Arrays.sort(words, 0, count, LENGTH_ORDER);
+            int unique = 0;
+            for (int i = 0; i < count; i++) {
+                if (unique == 0 || !words[i].equals(words[unique - 1])) {
+                    words[unique++] = words[i];
+                }
+            }
+            Arrays.fill(words, unique, count, null);
+            count = unique;
+            long indexStart = System.nanoTime();
+            WordStore store = new WordStore(Arrays.copyOf(words, unique), pool, chunkSize);
+            store.readNanos = sortStart - created;
+            store.sortNanos = indexStart - sortStart;
+            store.indexNanos = System.nanoTime() - indexStart;
+            return store;
+        }
+    }
+
+    public static WordStore read(Reader reader) throws IOException {
+        return read(reader, null);
+    }
+
+    public static WordStore read(Reader reader, ForkJoinPool pool) throws IOException {
+        Builder builder = new Builder();
+        BufferedReader in = new BufferedReader(reader);
+        String line;
+        while ((line = in.readLine()) != null) {
+            String word = line.trim();
+            if (!word.isEmpty()) builder.add(word);
+        }
+        return builder.build(pool);
+    }
+
+    private WordStore(final String[] words, ForkJoinPool pool, final int chunkSize) throws IOException {
+        this.words = words;
+
+        int maxLength = words.length == 0 ? 0 : words[words.length - 1].length();
+        lengthStart = new int[maxLength + 2];
+        for (String word : words) {
+            lengthStart[word.length() + 1]++;
+        }
+        for (int length = 0; length <= maxLength; length++) {
+            lengthStart[length + 1] += lengthStart[length];
+        }
+
+        // Each chunk hashes its words and lists its distinct signatures in order of first use
+        final int chunkCount = (words.length + chunkSize - 1) / chunkSize;
+        final long[] signatures = new long[words.length];
+        final long[][] chunkSignatures = new long[chunkCount][];
+        forEachChunk(pool, chunkCount, new ChunkWork() {
+            @Override
+            public void run(int chunk) {
+                int from = chunk * chunkSize;
+                int to = Math.min(words.length, from + chunkSize);
+                LongIntHashMap seen = new LongIntHashMap(to - from);
+                long[] distinct = new long[to - from];
+                int count = 0;
+                for (int id = from; id < to; id++) {
+                    long signature = LetterSignature.of(words[id]);
+                    signatures[id] = signature;
+                    if (!seen.containsKey(signature)) {
+                        seen.put(signature, count);
+                        distinct[count++] = signature;
+                    }
+                }
+                chunkSignatures[chunk] = Arrays.copyOf(distinct, count);
+            }
+        });
+
+        // Merging the partial lists in chunk order numbers groups by first use, as a single pass would
+        signatureToGroup = new LongIntHashMap(words.length);
+        int groupCount = 0;
+        for (long[] distinct : chunkSignatures) {
+            for (long signature : distinct) {
+                if (!signatureToGroup.containsKey(signature)) {
+                    signatureToGroup.put(signature, groupCount++);
+                }
+            }
+        }
+
+        final int[] groupOf = new int[words.length];
+        forEachChunk(pool, chunkCount, new ChunkWork() {
+            @Override
+            public void run(int chunk) {
+                int to = Math.min(words.length, (chunk + 1) * chunkSize);
+                for (int id = chunk * chunkSize; id < to; id++) {
+                    groupOf[id] = signatureToGroup.get(signatures[id], -1);
+                }
+            }
+        });
+
+        groupStart = new int[groupCount + 1];
+        for (int id = 0; id < words.length; id++) {
+            groupStart[groupOf[id] + 1]++;
+        }
+        for (int group = 0; group < groupCount; group++) {
+            groupStart[group + 1] += groupStart[group];
+        }
+        groupMembers = new int[words.length];
+        int[] next = Arrays.copyOf(groupStart, groupCount);
+        for (int id = 0; id < words.length; id++) {
+            groupMembers[next[groupOf[id]]++] = id;
+        }
+
+        // Every member must really be an anagram of its group's first word
+        final int[] collisions = new int[chunkCount];
+        forEachChunk(pool, chunkCount, new ChunkWork() {
+            @Override
+            public void run(int chunk) {
+                collisions[chunk] = -1;
+                int to = Math.min(words.length, (chunk + 1) * chunkSize);
+                for (int id = chunk * chunkSize; id < to; id++) {
+                    int first = groupMembers[groupStart[groupOf[id]]];
+                    if (first != id && !sameLetters(words[first], words[id])) {
+                        collisions[chunk] = id;
+                        return;
+                    }
+                }
+            }
+        });
+        for (int id : collisions) {
+            if (id >= 0) {
+                String first = words[groupMembers[groupStart[groupOf[id]]]];
+                throw new IOException("Letter signature collision: " + first + ", " + words[id]);
+            }
+        }
+    }
+
+    private interface ChunkWork {
+        void run(int chunk);
+    }
+
+    private static void forEachChunk(ForkJoinPool pool, int chunkCount, ChunkWork work) {
+        if (pool == null) {
+            for (int chunk = 0; chunk < chunkCount; chunk++) {
+                work.run(chunk);
+            }
+        } else if (chunkCount > 0) {
+            pool.invoke(new ChunkAction(work, 0, chunkCount));
+        }
+    }
+
+    private static class ChunkAction extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final ChunkWork work;
+        private final int from, to;
+
+        ChunkAction(ChunkWork work, int from, int to) {
+            this.work = work;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from == 1) {
+                work.run(from);
+                return;
+            }
+            int mid = (from + to) >>> 1;
+            invokeAll(new ChunkAction(work, from, mid), new ChunkAction(work, mid, to));
+        }
+    }
+
+    private static boolean sameLetters(String a, String b) {
+        char[] lettersA = a.toCharArray();
+        char[] lettersB = b.toCharArray();
+        Arrays.sort(lettersA);
+        Arrays.sort(lettersB);
+        return Arrays.equals(lettersA, lettersB);
+    }
+
+    public int size() {
+        return words.length;
+    }
+
+    public String get(int id) {
+        return words[id];
+    }
+
+    public int maxLength() {
+        return lengthStart.length - 2;
+    }
+
+    public int countOfLength(int length) {
+        if (length < 0 || length > maxLength()) return 0;
+        return lengthStart[length + 1] - lengthStart[length];
+    }
+
+    // Id of the first word of the given length; ids of that length are contiguous
+    public int firstOfLength(int length) {
+        return lengthStart[Math.max(0, Math.min(length, maxLength() + 1))];
+    }
+
+    // Every word, in id order
+    public List<String> asList() {
+        return Collections.unmodifiableList(Arrays.asList(words));
+    }
+
+    public List<String> wordsOfLength(int length) {
+        if (countOfLength(length) == 0) return Collections.emptyList();
+        return Collections.unmodifiableList(
+                Arrays.asList(words).subList(lengthStart[length], lengthStart[length + 1]));
+    }
+
+    // A uniformly chosen word of the given length, or null if there is none
+    public String randomWord(int length, Random random) {
+        int count = countOfLength(length);
+        return count == 0 ? null : words[lengthStart[length] + random.nextInt(count)];
+    }
+
+    // Two different words of the given length, every pair equally likely, or null if there are
+    // fewer than two. The second index is drawn from the n - 1 others, so it never repeats the first.
+    public String[] randomPair(int length, Random random) {
+        int count = countOfLength(length);
+        if (count < 2) return null;
+        int first = random.nextInt(count);
+        int second = random.nextInt(count - 1);
+        if (second >= first) second++;
+        return new String[] {words[lengthStart[length] + first], words[lengthStart[length] + second]};
+    }
+
+    public int indexOf(String word) {
+        int length = word.length();
+        if (length > maxLength()) return -1;
+        int found = Arrays.binarySearch(words, lengthStart[length], lengthStart[length + 1], word);
+        return found >= 0 ? found : -1;
+    }
+
+    public boolean contains(String word) {
+        return indexOf(word) >= 0;
+    }
+
+    // Every way to deal the letters of shuffled, keeping their order, into two words of the
+    // store, at most limit of them; as in Dawg.splits each pair is listed once, as {first, second},
+    // where first takes shuffled's first letter. Each of the 2^(n - 1) deals costs two binary
+    // searches, which is cheap for a word-stack round and needs no graph besides the store.
+    public List<String[]> splits(CharSequence shuffled, int limit) {
+        return splits(shuffled, 0, limit);
+    }
+
+    // As above, but only deals that give the first word firstLength letters, or any length if 0
+    public List<String[]> splits(CharSequence shuffled, int firstLength, int limit) {
+        List<String[]> out = new ArrayList<>();
+        int n = shuffled.length();
+        if (n < 2 || limit <= 0) return out;
+        if (n > 31) throw new IllegalArgumentException("Too many letters to deal: " + n);
+        Set<String> seen = new HashSet<>();
+        StringBuilder first = new StringBuilder(n);
+        StringBuilder second = new StringBuilder(n);
+        // Bit i - 1 of deal sends letter i to the second word; letter 0 always goes to the first
+        for (int deal = 1; deal < 1 << (n - 1) && out.size() < limit; deal++) {
+            if (firstLength > 0 && Integer.bitCount(deal) != n - firstLength) continue;
+            first.setLength(0);
+            second.setLength(0);
+            first.append(shuffled.charAt(0));
+            for (int i = 1; i < n; i++) {
+                (((deal >>> (i - 1)) & 1) != 0 ? second : first).append(shuffled.charAt(i));
+            }
+            String firstWord = first.toString();
+            String secondWord = second.toString();
+            if (contains(firstWord) && contains(secondWord) && seen.add(firstWord + " " + secondWord)) {
+                out.add(new String[] {firstWord, secondWord});
+            }
+        }
+        return out;
+    }
+
+    public int groupCount() {
+        return groupStart.length - 1;
+    }
+
+    // Returns the anagram group using exactly the letters in counts, or -1 if there is none
+    public int findGroup(long signature, int[] counts) {
+        int group = signatureToGroup.get(signature, -1);
+        return group >= 0 && LetterSignature.matches(groupWord(group, 0), counts) ? group : -1;
+    }
+
+    // Returns the anagram group of a word in the store, or -1 if the word is not in it
+    public int groupOf(String word) {
+        int group = signatureToGroup.get(LetterSignature.of(word), -1);
+        if (group < 0) return -1;
+        for (int i = groupStart[group]; i < groupStart[group + 1]; i++) {
+            if (words[groupMembers[i]].equals(word)) return group;
+        }
+        return -1;
+    }
+
+    public int groupSize(int group) {
+        return groupStart[group + 1] - groupStart[group];
+    }
+
+    public String groupWord(int group, int i) {
+        return words[groupMembers[groupStart[group] + i]];
+    }
+
+    // Group members are numbered 0 .. size() - 1 in group order; group g's start at groupStart(g)
+    public int groupStart(int group) {
+        return groupStart[group];
+    }
+
+    public String groupMember(int position) {
+        return words[groupMembers[position]];
+    }
+
+    // Nanoseconds spent reading the source, sorting the words and building the groups
+    public Map<String, Long> getLoadTimings() {
+        Map<String, Long> timings = new LinkedHashMap<>();
+        timings.put("read", readNanos);
+        timings.put("sort", sortNanos);
+        timings.put("index", indexNanos);
+        return timings;
+    }
+
+    // Estimated bytes retained by each structure; see HeapEstimate
+    public Map<String, Long> estimateRetainedBytes() {
+        long strings = 0;
+        for (String word : words) {
+            strings += HeapEstimate.string(word.length());
+        }
+        Map<String, Long> bytes = new LinkedHashMap<>();
+        bytes.put("words", HeapEstimate.array(words.length, HeapEstimate.REFERENCE) + strings);
+        bytes.put("lengthStart", HeapEstimate.array(lengthStart.length, 4));
+        bytes.put("signatureToGroup", signatureToGroup.estimateBytes());
+        bytes.put("groups", HeapEstimate.array(groupStart.length, 4) + HeapEstimate.array(groupMembers.length, 4));
+        return bytes;
+    }
+}
@@ -0,0 +1,199 @@
+/* Copyright 2016 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.engedu.dictionary;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.regex.Pattern;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks every Dawg query against a brute-force scan of the same words. The words are random
+ * strings over a few letters, so many of them share prefixes and suffixes.
+ */
+public class DawgTest {
+
+    private static final int UNLIMITED = Integer.MAX_VALUE;
+
+    private List<String> words;
+    private Set<String> wordSet;
+    private Dawg dawg;
+    private Random random;
+
+    @Before
+    public void setUp() {
+        random = new Random(42);
+        TreeSet<String> unique = new TreeSet<>();
+        while (unique.size() < 2000) {
+            unique.add(randomString(1 + random.nextInt(6)));
+        }
+        words = new ArrayList<>(unique);
+        wordSet = new HashSet<>(unique);
+        // Duplicates and input order must not matter
+        List<String> input = new ArrayList<>(words);
+        input.addAll(words.subList(0, 100));
+        Collections.shuffle(input, random);
+        dawg = Dawg.build(input);
+    }
+
+    private String randomString(int length) {
+        StringBuilder s = new StringBuilder();
+        for (int i = 0; i < length; i++) {
+            s.append((char) ('a' + random.nextInt(5)));
+        }
+        return s.toString();
+    }
+
+    @Test
+    public void build_sharesSuffixes() {
+        assertEquals(words.size(), dawg.size());
+        Set<String> prefixes = new HashSet<>();
+        for (String word : words) {
+            for (int i = 0; i <= word.length(); i++) prefixes.add(word.substring(0, i));
+        }
+        // A plain trie has a node per distinct prefix
+        assertTrue(dawg.nodeCount() < prefixes.size());
+    }
+
+    @Test
+    public void rankAndSelect_matchSortedOrder() {
+        for (int i = 0; i < words.size(); i++) {
+            assertEquals(i, dawg.rank(words.get(i)));
+            assertEquals(words.get(i), dawg.select(i));
+            assertTrue(dawg.contains(words.get(i)));
+        }
+        for (int i = 0; i < 500; i++) {
+            String word = randomString(1 + random.nextInt(7));
+            if (!wordSet.contains(word)) {
+                assertEquals(-1, dawg.rank(word));
+                assertFalse(dawg.contains(word));
+            }
+        }
+        assertEquals(-1, dawg.rank("xyz"));
+    }
+
+    @Test
+    public void prefixQueries_matchScan() {
+        for (int i = 0; i < 200; i++) {
+            String prefix = randomString(random.nextInt(4));
+            List<String> expected = new ArrayList<>();
+            for (String word : words) {
+                if (word.startsWith(prefix)) expected.add(word);
+            }
+            assertEquals(expected.size(), dawg.countWithPrefix(prefix));
+            assertEquals(expected, dawg.wordsWithPrefix(prefix, UNLIMITED));
+            int limit = random.nextInt(5);
+            assertEquals(expected.subList(0, Math.min(limit, expected.size())), dawg.wordsWithPrefix(prefix, limit));
+        }
+    }
+
+    @Test
+    public void match_agreesWithRegex() {
+        char[] pieces = {'a', 'b', 'c', 'd', 'e', '?', '?', '*'};
+        for (int i = 0; i < 500; i++) {
+            StringBuilder pattern = new StringBuilder();
+            for (int length = 1 + random.nextInt(5); pattern.length() < length; ) {
+                pattern.append(pieces[random.nextInt(pieces.length)]);
+            }
+            Pattern regex = Pattern.compile(pattern.toString().replace("?", ".").replace("*", ".*"));
+            List<String> expected = new ArrayList<>();
+            for (String word : words) {
+                if (regex.matcher(word).matches()) expected.add(word);
+            }
+            assertEquals(pattern.toString(), expected, dawg.match(pattern.toString(), UNLIMITED));
+            assertEquals(expected.subList(0, Math.min(3, expected.size())), dawg.match(pattern.toString(), 3));
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void match_rejectsLongPatterns() {
+        char[] pattern = new char[100];
+        Arrays.fill(pattern, '?');
+        dawg.match(new String(pattern), UNLIMITED);
+    }
+
+    @Test
+    public void anagramsWithBlanks_agreesWithLetterCounts() {
+        for (int i = 0; i < 300; i++) {
+            String letters = randomString(random.nextInt(5));
+            int blanks = random.nextInt(3);
+            List<String> expected = new ArrayList<>();
+            for (String word : words) {
+                if (usesAllWithBlanks(word, letters, blanks)) expected.add(word);
+            }
+            assertEquals(letters + " +" + blanks, expected, dawg.anagramsWithBlanks(letters, blanks, UNLIMITED));
+        }
+    }
+
+    private static boolean usesAllWithBlanks(String word, String letters, int blanks) {
+        int[] counts = new int[26];
+        for (int i = 0; i < word.length(); i++) counts[word.charAt(i) - 'a']++;
+        for (int i = 0; i < letters.length(); i++) {
+            if (--counts[letters.charAt(i) - 'a'] < 0) return false;
+        }
+        return word.length() - letters.length() <= blanks;
+    }
+
+    @Test
+    public void splits_agreeWithEveryDeal() {
+        for (int i = 0; i < 300; i++) {
+            String a = words.get(random.nextInt(words.size()));
+            String b = words.get(random.nextInt(words.size()));
+            StringBuilder shuffled = new StringBuilder();
+            int ai = 0, bi = 0;
+            while (ai < a.length() || bi < b.length()) {
+                boolean takeA = bi == b.length() || (ai < a.length() && random.nextBoolean());
+                shuffled.append(takeA ? a.charAt(ai++) : b.charAt(bi++));
+            }
+
+            Set<String> expected = allSplits(shuffled.toString());
+            Set<String> actual = new HashSet<>();
+            for (String[] pair : dawg.splits(shuffled, UNLIMITED)) {
+                assertTrue("listed twice: " + pair[0] + " " + pair[1], actual.add(pair[0] + " " + pair[1]));
+            }
+            assertEquals(shuffled.toString(), expected, actual);
+            assertTrue(expected.size() > 0);
+            assertEquals(Math.min(1, expected.size()), dawg.splits(shuffled, 1).size());
+        }
+    }
+
+    // Tries all 2^(n-1) ways to deal the letters, with the first letter going to the first word
+    private Set<String> allSplits(String shuffled) {
+        Set<String> found = new HashSet<>();
+        int n = shuffled.length();
+        for (int mask = 0; mask < 1 << (n - 1); mask++) {
+            StringBuilder first = new StringBuilder().append(shuffled.charAt(0));
+            StringBuilder second = new StringBuilder();
+            for (int i = 1; i < n; i++) {
+                ((mask >> (i - 1) & 1) == 0 ? first : second).append(shuffled.charAt(i));
+            }
+            if (second.length() > 0 && wordSet.contains(first.toString()) && wordSet.contains(second.toString())) {
+                found.add(first + " " + second);
+            }
+        }
+        return found;
+    }
+}
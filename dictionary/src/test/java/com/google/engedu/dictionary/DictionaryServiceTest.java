@@ -0,0 +1,165 @@
+/* Copyright 2016 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.engedu.dictionary;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks that a listener added while DictionaryService is reading gets the batches it missed,
+ * and that a second load asking for other words is turned down instead of sharing the first.
+ */
+public class DictionaryServiceTest {
+
+    private static final Executor DIRECT = new Executor() {
+        @Override
+        public void execute(Runnable command) {
+            command.run();
+        }
+    };
+
+    @Test
+    public void lateListener_getsTheBatchesReadSoFar() throws Exception {
+        // 600 words are read before the source blocks, so two batches are sent before the gate opens
+        CountDownLatch gate = new CountDownLatch(1);
+        DictionaryService service = new DictionaryService();
+        RecordingListener early = new RecordingListener(2);
+        Future<WordStore> load = service.load(gatedSource(600, 400, gate),
+                WordFilters.lengthBetween(1, 10), DIRECT, early);
+        assertTrue(early.batches.await(10, TimeUnit.SECONDS));
+
+        RecordingListener late = new RecordingListener(0);
+        assertSame(load, service.load(gatedSource(0, 0, gate), WordFilters.lengthBetween(1, 10), DIRECT, late));
+        assertEquals(early.words(), late.words());
+        assertEquals(512, late.words().size());
+
+        gate.countDown();
+        WordStore store = load.get(10, TimeUnit.SECONDS);
+        assertEquals(1000, store.size());
+        assertTrue(early.done.await(10, TimeUnit.SECONDS));
+        assertTrue(late.done.await(10, TimeUnit.SECONDS));
+        assertEquals(1000, early.words().size());
+        assertEquals(early.words(), late.words());
+        assertSame(store, late.store);
+
+        // Once the store is built there is nothing to replay, only the store
+        RecordingListener after = new RecordingListener(0);
+        service.load(gatedSource(0, 0, gate), WordFilters.lengthBetween(1, 10), DIRECT, after);
+        assertTrue(after.words().isEmpty());
+        assertSame(store, after.store);
+    }
+
+    @Test
+    public void otherFilter_isRejected() throws Exception {
+        DictionaryService service = new DictionaryService();
+        Callable<Reader> source = gatedSource(10, 0, new CountDownLatch(0));
+        service.load(source, WordFilters.lengthBetween(2, 4), DIRECT, null).get(10, TimeUnit.SECONDS);
+        service.load(source, WordFilters.lengthBetween(2, 4), DIRECT, null);
+        for (WordFilter other : new WordFilter[] {WordFilters.lengthBetween(2, 5), null}) {
+            try {
+                service.load(source, other, DIRECT, null);
+                fail("loaded with " + other);
+            } catch (IllegalArgumentException expected) {
+            }
+        }
+    }
+
+    // A word list whose first words are readable at once and whose rest waits for gate
+    private static Callable<Reader> gatedSource(final int before, final int after, final CountDownLatch gate) {
+        return new Callable<Reader>() {
+            @Override
+            public Reader call() {
+                final Reader first = new StringReader(words(0, before));
+                final Reader rest = new StringReader(words(before, after));
+                return new Reader() {
+                    private boolean opened;
+
+                    @Override
+                    public int read(char[] buffer, int offset, int length) throws IOException {
+                        int read = first.read(buffer, offset, length);
+                        if (read != -1) return read;
+                        if (!opened) {
+                            try {
+                                gate.await();
+                            } catch (InterruptedException e) {
+                                throw new IOException(e);
+                            }
+                            opened = true;
+                        }
+                        return rest.read(buffer, offset, length);
+                    }
+
+                    @Override
+                    public void close() {
+                    }
+                };
+            }
+        };
+    }
+
+    // count distinct words, "w<from>" onwards, one per line
+    private static String words(int from, int count) {
+        StringBuilder list = new StringBuilder();
+        for (int i = from; i < from + count; i++) {
+            list.append('w').append(i).append('\n');
+        }
+        return list.toString();
+    }
+
+    private static class RecordingListener implements DictionaryService.Listener {
+        final CountDownLatch batches;
+        final CountDownLatch done = new CountDownLatch(1);
+        private final List<String> words = new ArrayList<>();
+        volatile WordStore store;
+
+        RecordingListener(int expectedBatches) {
+            batches = new CountDownLatch(expectedBatches);
+        }
+
+        synchronized List<String> words() {
+            return new ArrayList<>(words);
+        }
+
+        @Override
+        public synchronized void onWordsRead(List<String> batch) {
+            words.addAll(batch);
+            batches.countDown();
+        }
+
+        @Override
+        public void onDictionaryReady(WordStore store) {
+            this.store = store;
+            done.countDown();
+        }
+
+        @Override
+        public void onDictionaryFailed(Exception e) {
+            done.countDown();
+        }
+    }
+}
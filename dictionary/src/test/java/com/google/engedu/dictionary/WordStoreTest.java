@@ -0,0 +1,207 @@
+/* Copyright 2016 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.engedu.dictionary;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks that building a WordStore on a ForkJoinPool gives the same store as building it on the
+ * calling thread, whatever the pool size and however the words fall into chunks, and checks the
+ * store's two-word splits against Dawg's.
+ */
+public class WordStoreTest {
+
+    // Prime, so no chunk size but 1 divides it and the last chunk is always partial
+    private static final int WORD_COUNT = 5003;
+
+    private List<String> input;
+    private WordStore sequential;
+
+    @Before
+    public void setUp() throws IOException {
+        Random random = new Random(17);
+        TreeSet<String> unique = new TreeSet<>();
+        while (unique.size() < WORD_COUNT) {
+            StringBuilder word = new StringBuilder();
+            for (int length = 1 + random.nextInt(7); word.length() < length; ) {
+                word.append((char) ('a' + random.nextInt(6)));
+            }
+            unique.add(word.toString());
+        }
+        // Shuffled and with repeats, so the build has to sort and dedupe
+        input = new ArrayList<>(unique);
+        input.addAll(input.subList(0, 300));
+        Collections.shuffle(input, random);
+        sequential = build(null, 4096);
+        assertEquals(WORD_COUNT, sequential.size());
+    }
+
+    @Test
+    public void read_onPool_matchesSequential() throws IOException {
+        StringBuilder list = new StringBuilder();
+        for (String word : input) {
+            list.append(word).append('\n');
+        }
+        for (int threads : new int[]{1, 2, 4}) {
+            ForkJoinPool pool = new ForkJoinPool(threads);
+            try {
+                assertSameStore(sequential, WordStore.read(new StringReader(list.toString()), pool));
+            } finally {
+                pool.shutdown();
+            }
+        }
+    }
+
+    @Test
+    public void build_onPool_matchesSequentialForAnyChunkSize() throws IOException {
+        for (int threads : new int[]{1, 3}) {
+            ForkJoinPool pool = new ForkJoinPool(threads);
+            try {
+                for (int chunkSize : new int[]{1, 7, 100, 1000, 4096, 2 * WORD_COUNT}) {
+                    assertSameStore(sequential, build(pool, chunkSize));
+                    assertSameStore(sequential, build(null, chunkSize));
+                }
+            } finally {
+                pool.shutdown();
+            }
+        }
+    }
+
+    @Test
+    public void emptyInput_buildsOnPool() throws IOException {
+        ForkJoinPool pool = new ForkJoinPool(2);
+        try {
+            WordStore store = new WordStore.Builder().build(pool);
+            assertEquals(0, store.size());
+            assertEquals(0, store.groupCount());
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    public void splits_matchDawg() {
+        Dawg dawg = Dawg.build(sequential.asList());
+        Random random = new Random(29);
+        for (int i = 0; i < 300; i++) {
+            // Two words dealt together, as word-stack does, or random letters
+            String shuffled;
+            if (random.nextBoolean()) {
+                shuffled = deal(sequential.get(random.nextInt(WORD_COUNT)),
+                        sequential.get(random.nextInt(WORD_COUNT)), random);
+            } else {
+                StringBuilder letters = new StringBuilder();
+                for (int length = 2 + random.nextInt(10); letters.length() < length; ) {
+                    letters.append((char) ('a' + random.nextInt(6)));
+                }
+                shuffled = letters.toString();
+            }
+            assertEquals(shuffled, pairs(dawg.splits(shuffled, Integer.MAX_VALUE)),
+                    pairs(sequential.splits(shuffled, Integer.MAX_VALUE)));
+        }
+        assertTrue(sequential.splits("a", 10).isEmpty());
+        assertTrue(sequential.splits("a", 1, 10).isEmpty());
+        String shuffled = deal(sequential.get(0), sequential.get(1), random);
+        assertEquals(1, sequential.splits(shuffled, 1).size());
+    }
+
+    @Test
+    public void splits_ofOneLength_areTheMatchingSplits() {
+        Random random = new Random(31);
+        for (int i = 0; i < 300; i++) {
+            String a = sequential.get(random.nextInt(WORD_COUNT));
+            String b = sequential.get(random.nextInt(WORD_COUNT));
+            String shuffled = deal(a, b, random);
+            for (int firstLength = 1; firstLength < shuffled.length(); firstLength++) {
+                Set<String> expected = new HashSet<>();
+                for (String[] split : sequential.splits(shuffled, Integer.MAX_VALUE)) {
+                    if (split[0].length() == firstLength) expected.add(split[0] + " " + split[1]);
+                }
+                assertEquals(expected, pairs(sequential.splits(shuffled, firstLength, Integer.MAX_VALUE)));
+            }
+            // The dealt pair itself is found at the length of whichever word took the first letter
+            Set<String> found = pairs(sequential.splits(shuffled, a.length(), Integer.MAX_VALUE));
+            found.addAll(pairs(sequential.splits(shuffled, b.length(), Integer.MAX_VALUE)));
+            assertTrue(shuffled, found.contains(a + " " + b) || found.contains(b + " " + a));
+        }
+    }
+
+    // The letters of a and b, each word's kept in order but interleaved at random
+    private static String deal(String a, String b, Random random) {
+        StringBuilder dealt = new StringBuilder();
+        int i = 0, j = 0;
+        while (i < a.length() || j < b.length()) {
+            if (j == b.length() || (i < a.length() && random.nextBoolean())) {
+                dealt.append(a.charAt(i++));
+            } else {
+                dealt.append(b.charAt(j++));
+            }
+        }
+        return dealt.toString();
+    }
+
+    // Each split as "first second"; fails if one is listed twice
+    private static Set<String> pairs(List<String[]> splits) {
+        Set<String> pairs = new HashSet<>();
+        for (String[] split : splits) {
+            assertTrue(pairs.add(split[0] + " " + split[1]));
+        }
+        return pairs;
+    }
+
+    private WordStore build(ForkJoinPool pool, int chunkSize) throws IOException {
+        WordStore.Builder builder = new WordStore.Builder();
+        for (String word : input) {
+            builder.accept(word);
+        }
+        return builder.build(pool, chunkSize);
+    }
+
+    private static void assertSameStore(WordStore expected, WordStore actual) {
+        assertEquals(expected.asList(), actual.asList());
+        assertEquals(expected.groupCount(), actual.groupCount());
+        int[] counts = new int[LetterSignature.ALPHABET_SIZE];
+        for (int group = 0; group < expected.groupCount(); group++) {
+            assertEquals(expected.groupStart(group), actual.groupStart(group));
+            assertEquals(expected.groupSize(group), actual.groupSize(group));
+            for (int i = 0; i < expected.groupSize(group); i++) {
+                assertEquals(expected.groupWord(group, i), actual.groupWord(group, i));
+            }
+            String first = actual.groupWord(group, 0);
+            long signature = LetterSignature.of(first);
+            assertEquals(LetterSignature.of(expected.groupWord(group, 0)), signature);
+            assertTrue(LetterSignature.countLetters(first, counts));
+            assertEquals(group, actual.findGroup(signature, counts));
+        }
+        for (int position = 0; position < expected.size(); position++) {
+            assertEquals(expected.groupMember(position), actual.groupMember(position));
+        }
+    }
+}
@@ -0,0 +1,244 @@
+/* Copyright 2016 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.engedu.touringmusician;
+
+import android.graphics.Point;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Tour held in parallel arrays: stop i is at (xs[i], ys[i]) and is followed by next[i] and
+ * preceded by prev[i]. Stops are numbered in the order they were added, which is also their
+ * number in the k-d tree, so there is no object per stop beyond the Point the caller passed in,
+ * and distances read only int arrays.
+ */
+public class ArrayTour implements Tour {
+
+    private static final int NONE = -1;
+    // Stops whose neighbouring edges are tried by insertSmallest
+    private static final int SMALLEST_CANDIDATES = 8;
+    // How far totalDistance may drift from a full recount before verification fails, relative
+    // to the tour length
+    private static final double DRIFT_TOLERANCE = 1e-9;
+
+    private int[] xs = new int[16];
+    private int[] ys = new int[16];
+    private int[] next = new int[16];
+    private int[] prev = new int[16];
+    // Only handed back by the iterator
+    private Point[] points = new Point[16];
+    private int count;
+    private int head = NONE;
+
+    private final KdTree<Void> index = new KdTree<>();
+    private final int[] candidates = new int[SMALLEST_CANDIDATES];
+    private double length;
+    private boolean verifying;
+
+    public int size() {
+        return count;
+    }
+
+    // Adds p as a stop of its own, not yet linked into the tour
+    private int add(Point p) {
+        if (count == xs.length) {
+            int capacity = count * 2;
+            xs = Arrays.copyOf(xs, capacity);
+            ys = Arrays.copyOf(ys, capacity);
+            next = Arrays.copyOf(next, capacity);
+            prev = Arrays.copyOf(prev, capacity);
+            points = Arrays.copyOf(points, capacity);
+        }
+        int stop = count++;
+        xs[stop] = p.x;
+        ys[stop] = p.y;
+        next[stop] = stop;
+        prev[stop] = stop;
+        points[stop] = p;
+        index.add(p.x, p.y, null);
+        return stop;
+    }
+
+    // Links stop in just before node
+    private void insertBefore(int stop, int node) {
+        int tail = prev[node];
+        length += distance(tail, stop) + distance(stop, node) - distance(tail, node);
+        next[stop] = node;
+        prev[stop] = tail;
+        next[tail] = stop;
+        prev[node] = stop;
+    }
+
+    private double distance(int a, int b) {
+        double dx = xs[a] - xs[b];
+        double dy = ys[a] - ys[b];
+        return Math.sqrt(dx * dx + dy * dy);
+    }
+
+    @Override
+    public void insertBeginning(Point p) {
+        int stop = add(p);
+        if (head != NONE) insertBefore(stop, head);
+        head = stop;
+    }
+
+    @Override
+    public void insertNearest(Point p) {
+        int nearest = index.nearestId(p.x, p.y);
+        int stop = add(p);
+        if (head == NONE) {
+            head = stop;
+        } else {
+            insertBefore(stop, nearest);
+        }
+    }
+
+    @Override
+    public void insertSmallest(Point p) {
+        int found = index.nearestIds(p.x, p.y, SMALLEST_CANDIDATES, candidates);
+        int stop = add(p);
+        if (head == NONE) {
+            head = stop;
+            return;
+        }
+
+        int best = NONE;
+        double bestCost = Double.MAX_VALUE;
+        for (int i = 0; i < found; i++) {
+            // Both edges touching the candidate
+            int node = candidates[i];
+            double cost = insertionCost(node, stop);
+            if (cost < bestCost) {
+                bestCost = cost;
+                best = node;
+            }
+            cost = insertionCost(prev[node], stop);
+            if (cost < bestCost) {
+                bestCost = cost;
+                best = prev[node];
+            }
+        }
+        insertBefore(stop, next[best]);
+    }
+
+    @Override
+    public void insertSmallestExhaustive(Point p) {
+        int stop = add(p);
+        if (head == NONE) {
+            head = stop;
+            return;
+        }
+
+        int best = head;
+        double bestCost = insertionCost(head, stop);
+        for (int node = next[head]; node != head; node = next[node]) {
+            double cost = insertionCost(node, stop);
+            if (cost < bestCost) {
+                bestCost = cost;
+                best = node;
+            }
+        }
+        insertBefore(stop, next[best]);
+    }
+
+    // How much longer the tour gets if stop goes between node and its next stop
+    private double insertionCost(int node, int stop) {
+        return distance(node, stop) + distance(stop, next[node]) - distance(node, next[node]);
+    }
+
+    @Override
+    public void setTour(Point[] stops, int[] order) {
+        reset();
+        for (int i : order) {
+            int stop = add(stops[i]);
+            if (head == NONE) {
+                head = stop;
+            } else {
+                insertBefore(stop, head);
+            }
+        }
+    }
+
+    @Override
+    public float totalDistance() {
+        if (verifying) {
+            double exact = recountDistance();
+            if (Math.abs(length - exact) > DRIFT_TOLERANCE * Math.max(1, exact)) {
+                throw new IllegalStateException("Tour length drifted: " + length + " kept, " + exact + " recounted");
+            }
+        }
+        return (float) length;
+    }
+
+    // Kahan summation, as in CircularLinkedList
+    @Override
+    public double recountDistance() {
+        if (head == NONE) return 0;
+        double total = 0;
+        double compensation = 0;
+        int node = head;
+        do {
+            double term = distance(node, next[node]) - compensation;
+            double sum = total + term;
+            compensation = (sum - total) - term;
+            total = sum;
+            node = next[node];
+        } while (node != head);
+        return total;
+    }
+
+    @Override
+    public void setVerifying(boolean verifying) {
+        this.verifying = verifying;
+    }
+
+    @Override
+    public void reset() {
+        Arrays.fill(points, 0, count, null);
+        count = 0;
+        head = NONE;
+        length = 0;
+        index.clear();
+    }
+
+    @Override
+    public Iterator<Point> iterator() {
+        return new Iterator<Point>() {
+            int current = head;
+
+            @Override
+            public boolean hasNext() {
+                return current != NONE;
+            }
+
+            @Override
+            public Point next() {
+                if (current == NONE) throw new NoSuchElementException();
+                Point point = points[current];
+                current = next[current];
+                if (current == head) current = NONE;
+                return point;
+            }
+
+            @Override
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+        };
+    }
+}
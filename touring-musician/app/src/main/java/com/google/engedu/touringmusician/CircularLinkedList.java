@@ -18,13 +18,11 @@ package com.google.engedu.touringmusician;
 
 import android.graphics.Point;
 
-import java.util.HashMap;
-import java.util.HashSet;
+import java.util.ArrayList;
 import java.util.Iterator;
-import java.util.Map;
-import java.util.Set;
+import java.util.List;
 
-public class CircularLinkedList implements Iterable<Point> {
+public class CircularLinkedList implements Tour {
 
     private class Node {
         Point point;
@@ -37,10 +35,24 @@ public class CircularLinkedList implements Iterable<Point> {
         }
     }
 
+    // Stops whose neighbouring edges are tried by insertSmallest
+    private static final int SMALLEST_CANDIDATES = 8;
+
+    // How far totalDistance may drift from a full recount before verification fails, relative
+    // to the tour length
+    private static final double DRIFT_TOLERANCE = 1e-9;
+
     Node head;
+    // Every node by its point, for nearest-stop lookups
+    private KdTree<Node> index = new KdTree<>();
+    // Length of the closed tour, kept up to date by every insert
+    private double length;
+    private boolean verifying;
 
     private void insertNode(Node toInsert, Node node) {
         Node tail = node.prev;
+        length += distanceBetween(tail.point, toInsert.point) + distanceBetween(toInsert.point, node.point)
+                - distanceBetween(tail.point, node.point);
 
         toInsert.next = node;
         toInsert.prev = tail;
@@ -49,8 +61,10 @@ public class CircularLinkedList implements Iterable<Point> {
         node.prev = toInsert;
     }
 
+    @Override
     public void insertBeginning(Point p) {
         Node node = new Node(p);
+        index.add(p.x, p.y, node);
 
         if (head != null) {
             insertNode(node, head);
@@ -59,62 +73,144 @@ public class CircularLinkedList implements Iterable<Point> {
         head = node;
     }
 
-    private float distanceBetween(Point from, Point to) {
-        return (float) Math.sqrt(Math.pow(from.y-to.y, 2) + Math.pow(from.x-to.x, 2));
+    private double distanceBetween(Point from, Point to) {
+        double dx = from.x - to.x;
+        double dy = from.y - to.y;
+        return Math.sqrt(dx * dx + dy * dy);
     }
 
+    // Length of the closed tour, including the edge from the last stop back to the first. O(1):
+    // the total is updated by each insert rather than recounted.
+    @Override
     public float totalDistance() {
-        float total = 0;
-        Node temp = head.next;
-
-        while (head != temp) {
-            total += distanceBetween(temp.point, temp.next.point);
-            temp = temp.next;
+        if (verifying) {
+            double exact = recountDistance();
+            if (Math.abs(length - exact) > DRIFT_TOLERANCE * Math.max(1, exact)) {
+                throw new IllegalStateException("Tour length drifted: " + length + " kept, " + exact + " recounted");
+            }
         }
+        return (float) length;
+    }
 
+    // Walks the whole tour, with Kahan summation so the recount itself does not drift
+    @Override
+    public double recountDistance() {
+        if (head == null) return 0;
+        double total = 0;
+        double compensation = 0;
+        Node node = head;
+        do {
+            double term = distanceBetween(node.point, node.next.point) - compensation;
+            double sum = total + term;
+            compensation = (sum - total) - term;
+            total = sum;
+            node = node.next;
+        } while (node != head);
         return total;
     }
 
+    @Override
+    public void setVerifying(boolean verifying) {
+        this.verifying = verifying;
+    }
+
+    @Override
     public void insertNearest(Point p) {
         Node toInsert = new Node(p);
         if (head == null) {
             head = toInsert;
+            index.add(p.x, p.y, toInsert);
             return;
         }
 
-        float minDistance = Float.MAX_VALUE;
-        Node nearest = head;
-        Node temp = head.next;
+        Node nearest = index.nearest(p.x, p.y);
+        insertNode(toInsert, nearest);
+        index.add(p.x, p.y, toInsert);
+    }
+
+    // Cheapest insertion: puts p on the edge (u, u.next) that lengthens the tour the least.
+    // Only the edges of the stops nearest p are tried, so a long edge passing close to p from
+    // far-off stops can be missed; insertSmallestExhaustive tries every edge.
+    @Override
+    public void insertSmallest(Point p) {
+        Node toInsert = new Node(p);
+        if (head == null) {
+            head = toInsert;
+            index.add(p.x, p.y, toInsert);
+            return;
+        }
 
-        while (temp != head) {
-            float distance = distanceBetween(p, temp.point);
-            if (distance < minDistance) {
-                minDistance = distance;
-                nearest = temp;
+        List<Node> nearby = new ArrayList<>(SMALLEST_CANDIDATES);
+        index.nearest(p.x, p.y, SMALLEST_CANDIDATES, nearby);
+        Node best = null;
+        double bestCost = Double.MAX_VALUE;
+        for (Node node : nearby) {
+            // Both edges touching node
+            double cost = insertionCost(node, p);
+            if (cost < bestCost) {
+                bestCost = cost;
+                best = node;
+            }
+            cost = insertionCost(node.prev, p);
+            if (cost < bestCost) {
+                bestCost = cost;
+                best = node.prev;
             }
-            temp = temp.next;
         }
 
-        insertNode(toInsert, nearest);
+        insertNode(toInsert, best.next);
+        index.add(p.x, p.y, toInsert);
     }
 
-    public void insertSmallest(Point p) {
-        // find 2 closest nodes
+    // Cheapest insertion over every edge of the tour, in O(n); the reference for insertSmallest
+    @Override
+    public void insertSmallestExhaustive(Point p) {
         Node toInsert = new Node(p);
-
         if (head == null) {
             head = toInsert;
+            index.add(p.x, p.y, toInsert);
             return;
         }
 
-        if (head.next == head) {
-            insertNode(toInsert, head);
-            return;
+        Node best = head;
+        double bestCost = insertionCost(head, p);
+        for (Node node = head.next; node != head; node = node.next) {
+            double cost = insertionCost(node, p);
+            if (cost < bestCost) {
+                bestCost = cost;
+                best = node;
+            }
         }
+
+        insertNode(toInsert, best.next);
+        index.add(p.x, p.y, toInsert);
+    }
+
+    // How much longer the tour gets if p goes between node and node.next
+    private double insertionCost(Node node, Point p) {
+        return distanceBetween(node.point, p) + distanceBetween(p, node.next.point)
+                - distanceBetween(node.point, node.next.point);
     }
 
+    @Override
+    public void setTour(Point[] stops, int[] order) {
+        reset();
+        for (int i : order) {
+            Node node = new Node(stops[i]);
+            index.add(node.point.x, node.point.y, node);
+            if (head == null) {
+                head = node;
+            } else {
+                insertNode(node, head);
+            }
+        }
+    }
+
+    @Override
     public void reset() {
         head = null;
+        length = 0;
+        index.clear();
     }
 
     private class CircularLinkedListIterator implements Iterator<Point> {
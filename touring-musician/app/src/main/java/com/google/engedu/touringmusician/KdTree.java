@@ -0,0 +1,264 @@
+/* Copyright 2016 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.engedu.touringmusician;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * 2-d tree of integer points, each carrying a value, for nearest-neighbour queries. Nodes live
+ * in parallel arrays and split on x at even depths and y at odd ones.
+ *
+ * Points can arrive in any order, sorted included: when an insert lands too deep, the subtree
+ * that got lopsided is rebuilt around its medians (a scapegoat tree), which keeps the depth
+ * logarithmic and queries O(log n) expected.
+ */
+public class KdTree<T> {
+
+    private static final int NONE = -1;
+    // A subtree is rebuilt when one child holds more than this share of it
+    private static final double BALANCE = 0.7;
+
+    private int[] xs = new int[16];
+    private int[] ys = new int[16];
+    private int[] left = new int[16];
+    private int[] right = new int[16];
+    private int[] size = new int[16];
+    private Object[] values = new Object[16];
+    private int root = NONE;
+    private int count;
+
+    // Scratch for inserts and rebuilds
+    private int[] path = new int[16];
+    private int[] subtree = new int[16];
+
+    public int size() {
+        return count;
+    }
+
+    public void clear() {
+        Arrays.fill(values, 0, count, null);
+        root = NONE;
+        count = 0;
+    }
+
+    public void add(int x, int y, T value) {
+        if (count == xs.length) grow();
+        int id = count++;
+        xs[id] = x;
+        ys[id] = y;
+        left[id] = NONE;
+        right[id] = NONE;
+        size[id] = 1;
+        values[id] = value;
+        if (root == NONE) {
+            root = id;
+            return;
+        }
+
+        int depth = 0;
+        int node = root;
+        while (true) {
+            if (depth == path.length) path = Arrays.copyOf(path, depth * 2);
+            path[depth] = node;
+            size[node]++;
+            boolean goLeft = before(id, node, (depth & 1) == 0);
+            int next = goLeft ? left[node] : right[node];
+            depth++;
+            if (next == NONE) {
+                if (goLeft) {
+                    left[node] = id;
+                } else {
+                    right[node] = id;
+                }
+                break;
+            }
+            node = next;
+        }
+
+        if (depth > maxDepth()) {
+            // Walk back up to the first ancestor whose child on the path holds too much of it
+            int child = id;
+            for (int i = depth - 1; i >= 0; i--) {
+                int ancestor = path[i];
+                if (size[child] > BALANCE * size[ancestor]) {
+                    int rebuilt = rebuild(ancestor, i);
+                    if (i == 0) {
+                        root = rebuilt;
+                    } else if (left[path[i - 1]] == ancestor) {
+                        left[path[i - 1]] = rebuilt;
+                    } else {
+                        right[path[i - 1]] = rebuilt;
+                    }
+                    break;
+                }
+                child = ancestor;
+            }
+        }
+    }
+
+    private int maxDepth() {
+        return (int) (Math.log(count) / Math.log(1 / BALANCE)) + 1;
+    }
+
+    private void grow() {
+        int capacity = xs.length * 2;
+        xs = Arrays.copyOf(xs, capacity);
+        ys = Arrays.copyOf(ys, capacity);
+        left = Arrays.copyOf(left, capacity);
+        right = Arrays.copyOf(right, capacity);
+        size = Arrays.copyOf(size, capacity);
+        values = Arrays.copyOf(values, capacity);
+    }
+
+    // Rebuilds the subtree at node, which sits at depth, around medians; returns its new root
+    private int rebuild(int node, int depth) {
+        if (subtree.length < size[node]) subtree = new int[Integer.highestOneBit(size[node]) * 2];
+        int n = collect(node, 0);
+        return build(0, n, depth);
+    }
+
+    private int collect(int node, int at) {
+        if (node == NONE) return at;
+        at = collect(left[node], at);
+        subtree[at++] = node;
+        return collect(right[node], at);
+    }
+
+    private int build(int from, int to, int depth) {
+        if (from >= to) return NONE;
+        int mid = (from + to) >>> 1;
+        select(from, to - 1, mid, (depth & 1) == 0);
+        int node = subtree[mid];
+        left[node] = build(from, mid, depth + 1);
+        right[node] = build(mid + 1, to, depth + 1);
+        size[node] = to - from;
+        return node;
+    }
+
+    // Quickselect: puts the k-th of subtree[lo..hi] in before() order at k, earlier ones before it
+    private void select(int lo, int hi, int k, boolean byX) {
+        while (lo < hi) {
+            int pivot = subtree[(lo + hi) >>> 1];
+            int i = lo, j = hi;
+            while (i <= j) {
+                while (before(subtree[i], pivot, byX)) i++;
+                while (before(pivot, subtree[j], byX)) j--;
+                if (i <= j) swap(i++, j--);
+            }
+            if (k <= j) {
+                hi = j;
+            } else if (k >= i) {
+                lo = i;
+            } else {
+                return;
+            }
+        }
+    }
+
+    // Orders nodes by the split coordinate, then the other one, then id. No two nodes tie, so
+    // even repeated points split evenly, and the split coordinate still never decreases.
+    private boolean before(int a, int b, boolean byX) {
+        int first = byX ? Integer.compare(xs[a], xs[b]) : Integer.compare(ys[a], ys[b]);
+        if (first != 0) return first < 0;
+        int second = byX ? Integer.compare(ys[a], ys[b]) : Integer.compare(xs[a], xs[b]);
+        return second != 0 ? second < 0 : a < b;
+    }
+
+    private void swap(int i, int j) {
+        int t = subtree[i];
+        subtree[i] = subtree[j];
+        subtree[j] = t;
+    }
+
+    // The value whose point is closest to (x, y), or null if the tree is empty
+    @SuppressWarnings("unchecked")
+    public T nearest(int x, int y) {
+        if (root == NONE) return null;
+        Nearest best = new Nearest(1);
+        search(root, 0, x, y, best);
+        return (T) values[best.ids[0]];
+    }
+
+    // Adds the values of the k points closest to (x, y) to out, closest first
+    @SuppressWarnings("unchecked")
+    public void nearest(int x, int y, int k, List<T> out) {
+        if (root == NONE || k <= 0) return;
+        Nearest best = new Nearest(Math.min(k, count));
+        search(root, 0, x, y, best);
+        for (int i = 0; i < best.found; i++) {
+            out.add((T) values[best.ids[i]]);
+        }
+    }
+
+    // Points are numbered in the order they were added, from 0 since the last clear. The number
+    // of the point closest to (x, y), or -1 if the tree is empty.
+    public int nearestId(int x, int y) {
+        if (root == NONE) return -1;
+        Nearest best = new Nearest(1);
+        search(root, 0, x, y, best);
+        return best.ids[0];
+    }
+
+    // Puts the numbers of the k points closest to (x, y) in ids, closest first; returns how many
+    public int nearestIds(int x, int y, int k, int[] ids) {
+        if (root == NONE || k <= 0) return 0;
+        Nearest best = new Nearest(Math.min(k, count));
+        search(root, 0, x, y, best);
+        System.arraycopy(best.ids, 0, ids, 0, best.found);
+        return best.found;
+    }
+
+    private void search(int node, int depth, int x, int y, Nearest best) {
+        long dx = (long) x - xs[node];
+        long dy = (long) y - ys[node];
+        best.offer(node, dx * dx + dy * dy);
+
+        long diff = (depth & 1) == 0 ? dx : dy;
+        int near = diff < 0 ? left[node] : right[node];
+        int far = diff < 0 ? right[node] : left[node];
+        if (near != NONE) search(near, depth + 1, x, y, best);
+        if (far != NONE && diff * diff < best.worst()) search(far, depth + 1, x, y, best);
+    }
+
+    // The closest points seen so far, kept sorted; k is small so insertion sort is enough
+    private static class Nearest {
+        final int[] ids;
+        final long[] distances;
+        int found;
+
+        Nearest(int k) {
+            ids = new int[k];
+            distances = new long[k];
+        }
+
+        long worst() {
+            return found < ids.length ? Long.MAX_VALUE : distances[found - 1];
+        }
+
+        void offer(int id, long distance) {
+            if (distance >= worst()) return;
+            int i = found < ids.length ? found++ : found - 1;
+            while (i > 0 && distances[i - 1] > distance) {
+                ids[i] = ids[i - 1];
+                distances[i] = distances[i - 1];
+                i--;
+            }
+            ids[i] = id;
+            distances[i] = distance;
+        }
+    }
+}
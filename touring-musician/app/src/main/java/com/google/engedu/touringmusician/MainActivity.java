@@ -49,7 +49,14 @@ public class MainActivity extends AppCompatActivity {
 
                 popup.setOnMenuItemClickListener(new PopupMenu.OnMenuItemClickListener() {
                     public boolean onMenuItemClick(MenuItem item) {
-                        map.setInsertMode(item.getTitle().toString());
+                        // The last two items pick how the tour is stored, not how stops are added
+                        if (item.getItemId() == R.id.array_tour) {
+                            map.switchTour(new ArrayTour());
+                        } else if (item.getItemId() == R.id.linked_list_tour) {
+                            map.switchTour(new CircularLinkedList());
+                        } else {
+                            map.setInsertMode(item.getTitle().toString());
+                        }
                         return true;
                     }
                 });
@@ -59,6 +66,10 @@ public class MainActivity extends AppCompatActivity {
         });
     }
 
+    public void onOptimize(View v) {
+        map.optimize();
+    }
+
     public void onReset(View v) {
         map.reset();
         TextView message = (TextView) findViewById(R.id.game_status);
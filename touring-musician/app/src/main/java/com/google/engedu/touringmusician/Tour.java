@@ -0,0 +1,53 @@
+/* Copyright 2016 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.engedu.touringmusician;
+
+import android.graphics.Point;
+
+/**
+ * A closed tour of stops, iterated in visiting order from the first stop. TourMap works with
+ * any implementation: {@link CircularLinkedList} keeps a node per stop, {@link ArrayTour} keeps
+ * parallel int arrays.
+ */
+public interface Tour extends Iterable<Point> {
+
+    // Makes p the first stop, visited just after the last one
+    void insertBeginning(Point p);
+
+    // Puts p just before the stop closest to it
+    void insertNearest(Point p);
+
+    // Puts p where it lengthens the tour the least, trying only the edges near p
+    void insertSmallest(Point p);
+
+    // As insertSmallest, but tries every edge
+    void insertSmallestExhaustive(Point p);
+
+    // Replaces the tour with stops visited in the given order, e.g. one from TourOptimizer
+    void setTour(Point[] stops, int[] order);
+
+    // Length of the closed tour, kept up to date by every change
+    float totalDistance();
+
+    // Length of the closed tour, measured from scratch
+    double recountDistance();
+
+    // When on, every totalDistance call recounts the tour in O(n) and throws
+    // IllegalStateException if the running total has drifted. Meant for tests; the app leaves it off.
+    void setVerifying(boolean verifying);
+
+    void reset();
+}
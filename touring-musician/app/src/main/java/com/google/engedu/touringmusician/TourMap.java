@@ -28,12 +28,15 @@ import android.view.View;
 import android.widget.TextView;
 
 import java.util.ArrayList;
+import java.util.List;
 
 public class TourMap extends View {
 
     private Bitmap mapImage;
-    private CircularLinkedList list = new CircularLinkedList();
+    private Tour list = new ArrayTour();
     private String insertMode = "Add";
+    // The search running in the background, if any
+    private TourOptimizer optimizer;
 
     public TourMap(Context context) {
         super(context);
@@ -53,21 +56,30 @@ public class TourMap extends View {
         linePaint.setColor(Color.BLACK);
         linePaint.setStrokeWidth(10);
 
+        Point firstPoint = null;
         Point lastPoint = null;
 
         for (Point p : list) {
             canvas.drawCircle(p.x, p.y, 20, pointPaint);
             if (lastPoint != null) {
                 canvas.drawLine(lastPoint.x, lastPoint.y, p.x, p.y, linePaint);
+            } else {
+                firstPoint = p;
             }
             lastPoint = p;
         }
+        // The tour is a loop, and its length includes the way back
+        if (lastPoint != firstPoint) {
+            canvas.drawLine(lastPoint.x, lastPoint.y, firstPoint.x, firstPoint.y, linePaint);
+        }
     }
 
     @Override
     public boolean onTouchEvent(MotionEvent event) {
         switch (event.getAction()) {
             case MotionEvent.ACTION_DOWN:
+                // A new stop makes the running search's tour stale
+                cancelOptimization();
                 Point p = new Point((int) event.getX(), (int)event.getY());
                 if (insertMode.equals("Closest")) {
                     list.insertNearest(p);
@@ -76,21 +88,103 @@ public class TourMap extends View {
                 } else {
                     list.insertBeginning(p);
                 }
-                TextView message = (TextView) ((Activity) getContext()).findViewById(R.id.game_status);
-                if (message != null) {
-                    message.setText(String.format("Tour length is now %.2f", list.totalDistance()));
-                }
+                showStatus(String.format("Tour length is now %.2f", list.totalDistance()));
                 invalidate();
                 return true;
         }
         return super.onTouchEvent(event);
     }
 
+    private void showStatus(String status) {
+        TextView message = (TextView) ((Activity) getContext()).findViewById(R.id.game_status);
+        if (message != null) {
+            message.setText(status);
+        }
+    }
+
+    // Shortens the current tour with TourOptimizer on a background thread, redrawing each
+    // better tour as it comes in
+    public void optimize() {
+        cancelOptimization();
+        List<Point> points = new ArrayList<>();
+        for (Point p : list) {
+            points.add(p);
+        }
+        final Point[] stops = points.toArray(new Point[points.size()]);
+        final TourOptimizer search = new TourOptimizer(stops);
+        optimizer = search;
+        showStatus("Optimizing tour...");
+
+        final TourOptimizer.Listener listener = new TourOptimizer.Listener() {
+            @Override
+            public void onTourImproved(int[] order, double length) {
+                publish(search, stops, order, String.format("Optimizing, tour length is now %.2f", length));
+            }
+
+            @Override
+            public void onOptimizationFinished(int[] order, double length) {
+                publish(search, stops, order, String.format("Optimized tour length is %.2f", length));
+            }
+        };
+        Thread thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                android.os.Process.setThreadPriority(android.os.Process.THREAD_PRIORITY_BACKGROUND);
+                search.optimize(listener);
+            }
+        }, "TourOptimizer");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    // Shows a tour from search on the UI thread, unless search has been replaced or cancelled since
+    private void publish(final TourOptimizer search, final Point[] stops, final int[] order, final String status) {
+        post(new Runnable() {
+            @Override
+            public void run() {
+                if (search != optimizer || search.isCancelled()) return;
+                list.setTour(stops, order);
+                showStatus(status);
+                invalidate();
+            }
+        });
+    }
+
+    private void cancelOptimization() {
+        if (optimizer != null) {
+            optimizer.cancel();
+            optimizer = null;
+        }
+    }
+
+    @Override
+    protected void onDetachedFromWindow() {
+        cancelOptimization();
+        super.onDetachedFromWindow();
+    }
+
     public void reset() {
+        cancelOptimization();
         list.reset();
         invalidate();
     }
 
+    // Moves the current stops, in order, into tour and keeps using it from now on
+    public void switchTour(Tour tour) {
+        cancelOptimization();
+        List<Point> points = new ArrayList<>();
+        for (Point p : list) {
+            points.add(p);
+        }
+        int[] order = new int[points.size()];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
+        }
+        tour.setTour(points.toArray(new Point[points.size()]), order);
+        list = tour;
+        invalidate();
+    }
+
     public void setInsertMode(String mode) {
         insertMode = mode;
     }
@@ -0,0 +1,313 @@
+/* Copyright 2016 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.engedu.touringmusician;
+
+import android.graphics.Point;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Shortens a tour with 2-opt and Or-opt local search until neither finds an improving move.
+ *
+ * The tour is an order array plus each stop's position in it, so a 2-opt move is a reversal of
+ * positions (the shorter side of the ring) and an Or-opt move shifts the shorter run of stops
+ * past the moved segment. Moves are only tried towards each stop's nearest neighbours, and a
+ * stop is looked at again only after one of its edges changed ("don't look" bits, kept as a
+ * queue of stops to look at).
+ *
+ * optimize runs on the calling thread; cancel may be called from any thread.
+ */
+public class TourOptimizer {
+
+    public interface Listener {
+        // A shorter tour, as indices into the stops in visiting order. Sent at most every
+        // PUBLISH_INTERVAL_NANOS while the search runs.
+        void onTourImproved(int[] order, double length);
+
+        // The final tour; not sent if the search was cancelled
+        void onOptimizationFinished(int[] order, double length);
+    }
+
+    private static final int NEIGHBORS = 8;
+    // Longest run of stops an Or-opt move relocates
+    private static final int MAX_SEGMENT = 3;
+    // Gains smaller than this are rounding noise and would let the search cycle
+    private static final double EPSILON = 1e-7;
+    private static final long PUBLISH_INTERVAL_NANOS = 100000000L;
+
+    private final Point[] stops;
+    private final int n;
+    // order[i] is the stop visited i-th; position[order[i]] == i
+    private final int[] order;
+    private final int[] position;
+    private int[][] neighbors;
+
+    // Stops whose don't-look bit is off, as a ring buffer
+    private final int[] queue;
+    private final boolean[] queued;
+    private int queueHead;
+    private int queueSize;
+
+    private double length;
+    private volatile boolean cancelled;
+
+    // stops in their current visiting order
+    public TourOptimizer(Point[] stops) {
+        this.stops = stops;
+        n = stops.length;
+        order = new int[n];
+        position = new int[n];
+        for (int i = 0; i < n; i++) {
+            order[i] = i;
+            position[i] = i;
+        }
+        queue = new int[n];
+        queued = new boolean[n];
+    }
+
+    public void cancel() {
+        cancelled = true;
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    // Runs the search to the end or until cancelled; returns the tour length reached
+    public double optimize(Listener listener) {
+        length = tourLength();
+        // With three stops or fewer every order is the same loop
+        if (n > 3) {
+            findNeighbors();
+            for (int stop = 0; stop < n; stop++) {
+                push(stop);
+            }
+            long lastPublish = System.nanoTime();
+            while (queueSize > 0 && !cancelled) {
+                int stop = pop();
+                if (!twoOpt(stop) && !orOpt(stop)) continue;
+                if (listener != null && System.nanoTime() - lastPublish > PUBLISH_INTERVAL_NANOS) {
+                    listener.onTourImproved(order.clone(), length);
+                    lastPublish = System.nanoTime();
+                }
+            }
+        }
+        // Drop the rounding the move gains added up
+        length = tourLength();
+        if (listener != null && !cancelled) listener.onOptimizationFinished(order.clone(), length);
+        return length;
+    }
+
+    public int[] getOrder() {
+        return order.clone();
+    }
+
+    public double getLength() {
+        return length;
+    }
+
+    private void findNeighbors() {
+        KdTree<Integer> index = new KdTree<>();
+        for (int stop = 0; stop < n; stop++) {
+            index.add(stops[stop].x, stops[stop].y, stop);
+        }
+        neighbors = new int[n][];
+        List<Integer> nearest = new ArrayList<>(NEIGHBORS + 1);
+        for (int stop = 0; stop < n; stop++) {
+            nearest.clear();
+            index.nearest(stops[stop].x, stops[stop].y, NEIGHBORS + 1, nearest);
+            int[] list = new int[NEIGHBORS];
+            int count = 0;
+            for (int other : nearest) {
+                if (other != stop && count < NEIGHBORS) list[count++] = other;
+            }
+            neighbors[stop] = count == NEIGHBORS ? list : Arrays.copyOf(list, count);
+        }
+    }
+
+    // Replaces edges (a, b) and (c, d) with (a, c) and (b, d), where b and d are both the next
+    // or both the previous stops of a and c. Neighbours are nearest first, so the search stops
+    // once (a, c) is no shorter than (a, b).
+    private boolean twoOpt(int a) {
+        for (int direction = 0; direction < 2; direction++) {
+            boolean forward = direction == 0;
+            int b = forward ? next(a) : prev(a);
+            double ab = distance(a, b);
+            for (int c : neighbors[a]) {
+                double ac = distance(a, c);
+                if (ac >= ab) break;
+                int d = forward ? next(c) : prev(c);
+                if (c == b || d == a) continue;
+                double gain = ab + distance(c, d) - ac - distance(b, d);
+                if (gain > EPSILON) {
+                    // Applying the move reverses len positions of the order array, which costs
+                    // O(min(len, n - len)) rather than O(1)
+                    if (forward) {
+                        reverse(position[b], position[c]);
+                    } else {
+                        reverse(position[a], position[d]);
+                    }
+                    length -= gain;
+                    push(a);
+                    push(b);
+                    push(c);
+                    push(d);
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    // Moves the run of up to MAX_SEGMENT stops starting at first next to one of the nearest
+    // neighbours of its ends, either way round
+    private boolean orOpt(int first) {
+        for (int size = 1; size <= MAX_SEGMENT && size + 2 < n; size++) {
+            int last = order[(position[first] + size - 1) % n];
+            int before = prev(first);
+            int after = next(last);
+            double removed = distance(before, first) + distance(last, after) - distance(before, after);
+            if (removed <= EPSILON) continue;
+
+            for (int end = 0; end < 2; end++) {
+                for (int c : neighbors[end == 0 ? first : last]) {
+                    if (inSegment(c, first, size)) continue;
+                    // The two edges at c
+                    for (int side = 0; side < 2; side++) {
+                        int e = side == 0 ? c : prev(c);
+                        int f = next(e);
+                        if (inSegment(e, first, size) || inSegment(f, first, size)) continue;
+                        double ef = distance(e, f);
+                        double kept = distance(e, first) + distance(last, f) - ef;
+                        double flipped = distance(e, last) + distance(first, f) - ef;
+                        boolean reversed = flipped < kept;
+                        if (removed - Math.min(kept, flipped) > EPSILON) {
+                            length -= removed - Math.min(kept, flipped);
+                            moveSegment(first, size, e, reversed);
+                            push(before);
+                            push(after);
+                            push(first);
+                            push(last);
+                            push(e);
+                            push(f);
+                            return true;
+                        }
+                    }
+                }
+            }
+        }
+        return false;
+    }
+
+    private boolean inSegment(int stop, int first, int size) {
+        return (position[stop] - position[first] + n) % n < size;
+    }
+
+    // Reverses the stops at positions from, from + 1, ..., to, wrapping around the ring.
+    // Reversing the other side instead gives the same loop, so the shorter side is reversed:
+    // min(len, n - len) / 2 swaps for a run of len positions.
+    private void reverse(int from, int to) {
+        int count = (to - from + n) % n + 1;
+        if (count * 2 > n) {
+            int newFrom = (to + 1) % n;
+            to = (from - 1 + n) % n;
+            from = newFrom;
+            count = n - count;
+        }
+        for (int k = 0; k < count / 2; k++) {
+            int stop = order[from];
+            place(order[to], from);
+            place(stop, to);
+            from = (from + 1) % n;
+            to = (to - 1 + n) % n;
+        }
+    }
+
+    // Takes the size stops starting at first out of the ring and puts them right after target,
+    // reversed if asked. Either the stops between the segment and target shift back, or the
+    // ones on the other side shift forward, whichever is fewer.
+    private void moveSegment(int first, int size, int target, boolean reversed) {
+        int start = position[first];
+        int[] segment = new int[size];
+        for (int i = 0; i < size; i++) {
+            segment[i] = order[(start + i) % n];
+        }
+        int between = (position[target] - (start + size - 1) + n) % n;
+        int other = n - size - between;
+        int at;
+        if (between <= other) {
+            for (int i = 0; i < between; i++) {
+                place(order[(start + size + i) % n], (start + i) % n);
+            }
+            at = (start + between) % n;
+        } else {
+            for (int i = 1; i <= other; i++) {
+                int from = (start - i + n) % n;
+                place(order[from], (from + size) % n);
+            }
+            at = (start - other + n) % n;
+        }
+        for (int i = 0; i < size; i++) {
+            place(reversed ? segment[size - 1 - i] : segment[i], (at + i) % n);
+        }
+    }
+
+    private void place(int stop, int at) {
+        order[at] = stop;
+        position[stop] = at;
+    }
+
+    private int next(int stop) {
+        int at = position[stop] + 1;
+        return order[at == n ? 0 : at];
+    }
+
+    private int prev(int stop) {
+        int at = position[stop] - 1;
+        return order[at < 0 ? n - 1 : at];
+    }
+
+    private void push(int stop) {
+        if (queued[stop]) return;
+        queued[stop] = true;
+        queue[(queueHead + queueSize) % n] = stop;
+        queueSize++;
+    }
+
+    private int pop() {
+        int stop = queue[queueHead];
+        queueHead = (queueHead + 1) % n;
+        queueSize--;
+        queued[stop] = false;
+        return stop;
+    }
+
+    private double distance(int a, int b) {
+        double dx = stops[a].x - stops[b].x;
+        double dy = stops[a].y - stops[b].y;
+        return Math.sqrt(dx * dx + dy * dy);
+    }
+
+    private double tourLength() {
+        double total = 0;
+        for (int i = 0; i < n; i++) {
+            total += distance(order[i], order[(i + 1) % n]);
+        }
+        return total;
+    }
+}
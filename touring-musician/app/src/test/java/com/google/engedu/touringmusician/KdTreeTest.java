@@ -0,0 +1,129 @@
+/* Copyright 2016 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.engedu.touringmusician;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks KdTree's nearest-neighbour queries against a scan of every point. Ties between equally
+ * close points may go either way, so results are compared by distance.
+ */
+public class KdTreeTest {
+
+    private final Random random = new Random(3);
+
+    @Test
+    public void empty_hasNoNearest() {
+        KdTree<Integer> tree = new KdTree<>();
+        assertNull(tree.nearest(0, 0));
+        assertEquals(-1, tree.nearestId(0, 0));
+        assertEquals(0, tree.nearestIds(0, 0, 3, new int[3]));
+        List<Integer> out = new ArrayList<>();
+        tree.nearest(0, 0, 3, out);
+        assertTrue(out.isEmpty());
+    }
+
+    @Test
+    public void randomPoints_matchScan() {
+        checkAgainstScan(randomPoints(2000, 1000));
+    }
+
+    @Test
+    public void sortedAndRepeatedPoints_matchScan() {
+        // Sorted input is the worst case for an unbalanced tree; repeats test the median ties
+        int[][] points = randomPoints(2000, 30);
+        Arrays.sort(points, new Comparator<int[]>() {
+            @Override
+            public int compare(int[] a, int[] b) {
+                return a[0] != b[0] ? Integer.compare(a[0], b[0]) : Integer.compare(a[1], b[1]);
+            }
+        });
+        checkAgainstScan(points);
+    }
+
+    @Test
+    public void clear_forgetsPoints() {
+        KdTree<Integer> tree = new KdTree<>();
+        tree.add(5, 5, 0);
+        tree.add(9, 9, 1);
+        tree.clear();
+        assertEquals(0, tree.size());
+        assertNull(tree.nearest(5, 5));
+        tree.add(1, 1, 7);
+        assertEquals(Integer.valueOf(7), tree.nearest(5, 5));
+        assertEquals(0, tree.nearestId(5, 5));
+    }
+
+    private int[][] randomPoints(int count, int range) {
+        int[][] points = new int[count][];
+        for (int i = 0; i < count; i++) {
+            points[i] = new int[]{random.nextInt(range), random.nextInt(range)};
+        }
+        return points;
+    }
+
+    private void checkAgainstScan(int[][] points) {
+        KdTree<Integer> tree = new KdTree<>();
+        for (int i = 0; i < points.length; i++) {
+            tree.add(points[i][0], points[i][1], i);
+            // Query while the tree grows, so rebuilt subtrees are checked too
+            if (i % 97 == 0) checkQueries(tree, points, i + 1);
+        }
+        assertEquals(points.length, tree.size());
+        checkQueries(tree, points, points.length);
+    }
+
+    private void checkQueries(KdTree<Integer> tree, int[][] points, int count) {
+        for (int q = 0; q < 50; q++) {
+            int x = random.nextInt(1100) - 50;
+            int y = random.nextInt(1100) - 50;
+            long[] sorted = new long[count];
+            for (int i = 0; i < count; i++) {
+                sorted[i] = distance(points[i], x, y);
+            }
+            Arrays.sort(sorted);
+
+            assertEquals(sorted[0], distance(points[tree.nearest(x, y)], x, y));
+            assertEquals(sorted[0], distance(points[tree.nearestId(x, y)], x, y));
+
+            int k = 1 + random.nextInt(10);
+            List<Integer> values = new ArrayList<>();
+            tree.nearest(x, y, k, values);
+            int[] ids = new int[k];
+            int found = tree.nearestIds(x, y, k, ids);
+            assertEquals(Math.min(k, count), values.size());
+            assertEquals(values.size(), found);
+            for (int i = 0; i < found; i++) {
+                assertEquals(sorted[i], distance(points[values.get(i)], x, y));
+                assertEquals(sorted[i], distance(points[ids[i]], x, y));
+            }
+        }
+    }
+
+    private static long distance(int[] point, int x, int y) {
+        long dx = point[0] - x;
+        long dy = point[1] - y;
+        return dx * dx + dy * dy;
+    }
+}
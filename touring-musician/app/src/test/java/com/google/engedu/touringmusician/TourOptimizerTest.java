@@ -0,0 +1,172 @@
+/* Copyright 2016 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.engedu.touringmusician;
+
+import android.graphics.Point;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks TourOptimizer's tours by brute force: every result must visit each stop once, report
+ * its true length, never get longer, and on small tours admit no improving 2-opt move at all.
+ */
+public class TourOptimizerTest {
+
+    private static final double TOLERANCE = 1e-6;
+
+    private final Random random = new Random(11);
+
+    @Test
+    public void tinyTours_areLeftAlone() {
+        for (int n = 0; n <= 3; n++) {
+            Point[] stops = randomStops(n);
+            TourOptimizer optimizer = new TourOptimizer(stops);
+            assertEquals(length(stops, identity(n)), optimizer.optimize(null), TOLERANCE);
+            assertArrayEquals(identity(n), optimizer.getOrder());
+        }
+    }
+
+    @Test
+    public void smallTours_areTwoOptOptimal() {
+        // With 9 stops or fewer every other stop is a neighbour, so no 2-opt move can be missed
+        for (int i = 0; i < 300; i++) {
+            Point[] stops = randomStops(4 + random.nextInt(6));
+            int[] order = checkedOptimize(stops);
+            assertNoTwoOptMove(stops, order);
+        }
+    }
+
+    @Test
+    public void largeTours_stayValidAndShorter() {
+        for (int i = 0; i < 20; i++) {
+            checkedOptimize(randomStops(50 + random.nextInt(400)));
+        }
+    }
+
+    @Test
+    public void listener_getsTheFinalTour() {
+        Point[] stops = randomStops(200);
+        final int[][] finished = new int[1][];
+        final double[] finishedLength = new double[1];
+        TourOptimizer optimizer = new TourOptimizer(stops);
+        double length = optimizer.optimize(new TourOptimizer.Listener() {
+            @Override
+            public void onTourImproved(int[] order, double length) {
+                assertPermutation(order);
+            }
+
+            @Override
+            public void onOptimizationFinished(int[] order, double length) {
+                assertNull(finished[0]);
+                finished[0] = order;
+                finishedLength[0] = length;
+            }
+        });
+        assertArrayEquals(optimizer.getOrder(), finished[0]);
+        assertEquals(length, finishedLength[0], 0);
+    }
+
+    @Test
+    public void cancelled_sendsNoFinalTour() {
+        Point[] stops = randomStops(200);
+        TourOptimizer optimizer = new TourOptimizer(stops);
+        optimizer.cancel();
+        assertTrue(optimizer.isCancelled());
+        optimizer.optimize(new TourOptimizer.Listener() {
+            @Override
+            public void onTourImproved(int[] order, double length) {
+                fail("cancelled search published a tour");
+            }
+
+            @Override
+            public void onOptimizationFinished(int[] order, double length) {
+                fail("cancelled search finished");
+            }
+        });
+        assertArrayEquals(identity(stops.length), optimizer.getOrder());
+    }
+
+    private int[] checkedOptimize(Point[] stops) {
+        TourOptimizer optimizer = new TourOptimizer(stops);
+        double before = length(stops, identity(stops.length));
+        double after = optimizer.optimize(null);
+        int[] order = optimizer.getOrder();
+        assertPermutation(order);
+        assertEquals(length(stops, order), after, TOLERANCE);
+        assertEquals(after, optimizer.getLength(), 0);
+        assertTrue(after <= before + TOLERANCE);
+        return order;
+    }
+
+    private static void assertNoTwoOptMove(Point[] stops, int[] order) {
+        int n = order.length;
+        for (int i = 0; i < n; i++) {
+            for (int j = i + 2; j < n; j++) {
+                int a = order[i], b = order[i + 1], c = order[j], d = order[(j + 1) % n];
+                if (d == a) continue;
+                double gain = distance(stops[a], stops[b]) + distance(stops[c], stops[d])
+                        - distance(stops[a], stops[c]) - distance(stops[b], stops[d]);
+                assertTrue("improving move at " + i + ", " + j + ": " + gain, gain <= TOLERANCE);
+            }
+        }
+    }
+
+    private static void assertPermutation(int[] order) {
+        boolean[] seen = new boolean[order.length];
+        for (int stop : order) {
+            assertFalse("stop " + stop + " visited twice", seen[stop]);
+            seen[stop] = true;
+        }
+    }
+
+    // Points are made with the no-argument constructor and filled in, so the test also runs
+    // against the android.jar stubs, whose constructors do nothing
+    private Point[] randomStops(int n) {
+        Point[] stops = new Point[n];
+        for (int i = 0; i < n; i++) {
+            stops[i] = new Point();
+            stops[i].x = random.nextInt(1000);
+            stops[i].y = random.nextInt(1000);
+        }
+        return stops;
+    }
+
+    private static int[] identity(int n) {
+        int[] order = new int[n];
+        for (int i = 0; i < n; i++) {
+            order[i] = i;
+        }
+        return order;
+    }
+
+    private static double length(Point[] stops, int[] order) {
+        double total = 0;
+        for (int i = 0; i < order.length; i++) {
+            total += distance(stops[order[i]], stops[order[(i + 1) % order.length]]);
+        }
+        return total;
+    }
+
+    private static double distance(Point a, Point b) {
+        double dx = a.x - b.x;
+        double dy = a.y - b.y;
+        return Math.sqrt(dx * dx + dy * dy);
+    }
+}
@@ -0,0 +1,249 @@
+/* Copyright 2016 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.engedu.touringmusician;
+
+import android.graphics.Point;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Feeds the same stops to ArrayTour and CircularLinkedList and checks that both end up with the
+ * same visiting order and length, since TourMap may use either, and that the running length
+ * matches a recount. Also checks insertSmallest, which only tries the edges near the new stop,
+ * against insertSmallestExhaustive.
+ */
+public class TourTest {
+
+    private static final double TOLERANCE = 1e-6;
+
+    private final Random random = new Random(23);
+
+    @Test
+    public void insertBeginning_sameInBothTours() {
+        checkSameTours(0);
+    }
+
+    @Test
+    public void insertNearest_sameInBothTours() {
+        checkSameTours(1);
+    }
+
+    @Test
+    public void insertSmallest_sameInBothTours() {
+        checkSameTours(2);
+    }
+
+    @Test
+    public void mixedInserts_sameInBothTours() {
+        checkSameTours(-1);
+    }
+
+    @Test
+    public void setTour_sameInBothTours() {
+        Tour array = new ArrayTour();
+        Tour linked = new CircularLinkedList();
+        for (int i = 0; i < 50; i++) {
+            Point[] stops = randomStops(1 + random.nextInt(200));
+            int[] order = shuffled(stops.length);
+            array.setTour(stops, order);
+            linked.setTour(stops, order);
+            assertSameTour(array, linked);
+            List<Point> visited = visitOrder(array);
+            for (int j = 0; j < order.length; j++) {
+                assertSame(stops[order[j]], visited.get(j));
+            }
+        }
+    }
+
+    @Test
+    public void runningLength_matchesRecount() {
+        checkRunningLength(new ArrayTour());
+        checkRunningLength(new CircularLinkedList());
+    }
+
+    // With verifying on, totalDistance itself throws if the running total drifts from a recount
+    private void checkRunningLength(Tour tour) {
+        tour.setVerifying(true);
+        assertEquals(0, tour.totalDistance(), 0);
+        Point[] stops = randomStops(3000);
+        for (int i = 0; i < stops.length; i++) {
+            insert(tour, random.nextInt(3), stops[i]);
+            assertLengthMatchesRecount(tour);
+        }
+        for (int i = 0; i < 5; i++) {
+            tour.setTour(stops, shuffled(stops.length));
+            assertLengthMatchesRecount(tour);
+            tour.insertSmallest(randomStops(1)[0]);
+            assertLengthMatchesRecount(tour);
+        }
+        tour.reset();
+        assertEquals(0, tour.totalDistance(), 0);
+    }
+
+    private static void assertLengthMatchesRecount(Tour tour) {
+        double exact = tour.recountDistance();
+        assertEquals(exact, tour.totalDistance(), TOLERANCE * Math.max(1, exact));
+    }
+
+    @Test
+    public void insertSmallest_matchesExhaustiveOnSmallTours() {
+        // With at most SMALLEST_CANDIDATES stops, every stop is a candidate and every edge is tried
+        for (int round = 0; round < 200; round++) {
+            checkAgainstExhaustive(new ArrayTour(), randomStops(1 + random.nextInt(9)), true);
+            checkAgainstExhaustive(new CircularLinkedList(), randomStops(1 + random.nextInt(9)), true);
+        }
+    }
+
+    @Test
+    public void insertSmallest_isBoundedByExhaustive() {
+        for (int round = 0; round < 5; round++) {
+            checkAgainstExhaustive(new ArrayTour(), randomStops(300), false);
+            checkAgainstExhaustive(new CircularLinkedList(), randomStops(300), false);
+        }
+    }
+
+    @Test
+    public void insertSmallest_wholeToursCloseToExhaustive() {
+        // Not a guarantee, but on random stops the heuristic's tours have been within about 1%
+        for (int round = 0; round < 20; round++) {
+            Tour heuristic = new ArrayTour();
+            Tour exhaustive = new ArrayTour();
+            for (Point p : randomStops(100 + random.nextInt(900))) {
+                heuristic.insertSmallest(p);
+                exhaustive.insertSmallestExhaustive(p);
+            }
+            assertTrue(heuristic.totalDistance() <= 1.05 * exhaustive.totalDistance());
+        }
+    }
+
+    // Grows tour with insertSmallest and, before each insert, tries insertSmallestExhaustive on a
+    // copy of it. The exhaustive insert is cheapest, so it bounds the heuristic from below; the
+    // heuristic tries the edges of the nearest stop q, and putting p after q costs at most
+    // 2 |pq|, so that bounds it from above. If exact, the two must cost the same.
+    private static void checkAgainstExhaustive(Tour tour, Point[] stops, boolean exact) {
+        for (int i = 0; i < stops.length; i++) {
+            Point p = stops[i];
+            double before = tour.recountDistance();
+            Tour copy = new ArrayTour();
+            List<Point> visited = visitOrder(tour);
+            copy.setTour(visited.toArray(new Point[visited.size()]), identity(visited.size()));
+            copy.insertSmallestExhaustive(p);
+            double best = copy.recountDistance() - before;
+
+            tour.insertSmallest(p);
+            double cost = tour.recountDistance() - before;
+            assertEquals(i + 1, visitOrder(tour).size());
+            assertTrue(cost + " < " + best, cost >= best - TOLERANCE);
+            if (exact) {
+                assertEquals(best, cost, TOLERANCE);
+            } else {
+                double nearest = Double.MAX_VALUE;
+                for (Point q : visited) {
+                    nearest = Math.min(nearest, distance(p, q));
+                }
+                if (!visited.isEmpty()) assertTrue(cost <= 2 * nearest + TOLERANCE);
+            }
+        }
+    }
+
+    // Inserts random stops into both tours with one insert mode, or a random mode per stop if
+    // mode is -1, checking after each insert
+    private void checkSameTours(int mode) {
+        for (int round = 0; round < 20; round++) {
+            Tour array = new ArrayTour();
+            Tour linked = new CircularLinkedList();
+            for (Point p : randomStops(1 + random.nextInt(300))) {
+                int insert = mode >= 0 ? mode : random.nextInt(3);
+                insert(array, insert, p);
+                insert(linked, insert, p);
+                assertSameTour(array, linked);
+            }
+            array.reset();
+            linked.reset();
+            assertSameTour(array, linked);
+        }
+    }
+
+    private static void insert(Tour tour, int mode, Point p) {
+        if (mode == 0) {
+            tour.insertBeginning(p);
+        } else if (mode == 1) {
+            tour.insertNearest(p);
+        } else {
+            tour.insertSmallest(p);
+        }
+    }
+
+    private static void assertSameTour(Tour expected, Tour actual) {
+        List<Point> order = visitOrder(expected);
+        List<Point> actualOrder = visitOrder(actual);
+        assertEquals(order.size(), actualOrder.size());
+        for (int i = 0; i < order.size(); i++) {
+            assertSame("stop " + i, order.get(i), actualOrder.get(i));
+        }
+        assertEquals(expected.totalDistance(), actual.totalDistance(), TOLERANCE * Math.max(1, expected.totalDistance()));
+        assertEquals(expected.recountDistance(), actual.recountDistance(), TOLERANCE);
+    }
+
+    private static List<Point> visitOrder(Tour tour) {
+        List<Point> order = new ArrayList<>();
+        for (Point p : tour) {
+            order.add(p);
+        }
+        return order;
+    }
+
+    private static int[] identity(int n) {
+        int[] order = new int[n];
+        for (int i = 0; i < n; i++) {
+            order[i] = i;
+        }
+        return order;
+    }
+
+    private static double distance(Point a, Point b) {
+        double dx = a.x - b.x;
+        double dy = a.y - b.y;
+        return Math.sqrt(dx * dx + dy * dy);
+    }
+
+    // Points are made with the no-argument constructor and filled in, as in TourOptimizerTest
+    private Point[] randomStops(int n) {
+        Point[] stops = new Point[n];
+        for (int i = 0; i < n; i++) {
+            stops[i] = new Point();
+            stops[i].x = random.nextInt(1000);
+            stops[i].y = random.nextInt(1000);
+        }
+        return stops;
+    }
+
+    private int[] shuffled(int n) {
+        int[] order = new int[n];
+        for (int i = 0; i < n; i++) {
+            int j = random.nextInt(i + 1);
+            order[i] = order[j];
+            order[j] = i;
+        }
+        return order;
+    }
+}
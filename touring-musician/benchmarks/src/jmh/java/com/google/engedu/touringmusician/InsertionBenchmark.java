@@ -0,0 +1,105 @@
+/* Copyright 2016 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.engedu.touringmusician;
+
+import android.graphics.Point;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Builds a tour of random stops one insert at a time, so the cost per insert shows how each
+ * mode scales as the tour grows.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class InsertionBenchmark {
+
+    // Roughly a phone screen, in pixels
+    private static final int WIDTH = 1080;
+    private static final int HEIGHT = 1920;
+
+    @Param({"1000", "5000", "20000"})
+    public int stops;
+
+    @Param({"linked", "array"})
+    public String tour;
+
+    Point[] points;
+    // A finished tour for the iterate benchmark
+    Tour built;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        points = new Point[stops];
+        for (int i = 0; i < stops; i++) {
+            points[i] = new Point(random.nextInt(WIDTH), random.nextInt(HEIGHT));
+        }
+        built = nearest();
+    }
+
+    private Tour newTour() {
+        return tour.equals("array") ? new ArrayTour() : new CircularLinkedList();
+    }
+
+    @Benchmark
+    public Tour nearest() {
+        Tour list = newTour();
+        for (Point p : points) {
+            list.insertNearest(p);
+        }
+        return list;
+    }
+
+    @Benchmark
+    public Tour smallest() {
+        Tour list = newTour();
+        for (Point p : points) {
+            list.insertSmallest(p);
+        }
+        return list;
+    }
+
+    @Benchmark
+    public Tour smallestExhaustive() {
+        Tour list = newTour();
+        for (Point p : points) {
+            list.insertSmallestExhaustive(p);
+        }
+        return list;
+    }
+
+    // Walks the whole tour, as every redraw does
+    @Benchmark
+    public long iterate() {
+        long sum = 0;
+        for (Point p : built) {
+            sum += p.x + p.y;
+        }
+        return sum;
+    }
+}
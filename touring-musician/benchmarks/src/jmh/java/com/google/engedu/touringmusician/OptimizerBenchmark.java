@@ -0,0 +1,75 @@
+/* Copyright 2016 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.engedu.touringmusician;
+
+import android.graphics.Point;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs the 2-opt / Or-opt search to the end, starting from a tour in random order or one built
+ * with insertNearest.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class OptimizerBenchmark {
+
+    private static final int WIDTH = 1080;
+    private static final int HEIGHT = 1920;
+
+    @Param({"1000", "10000"})
+    public int stops;
+
+    @Param({"random", "nearest"})
+    public String start;
+
+    Point[] points;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        points = new Point[stops];
+        for (int i = 0; i < stops; i++) {
+            points[i] = new Point(random.nextInt(WIDTH), random.nextInt(HEIGHT));
+        }
+        if (start.equals("nearest")) {
+            CircularLinkedList list = new CircularLinkedList();
+            for (Point p : points) {
+                list.insertNearest(p);
+            }
+            int i = 0;
+            for (Point p : list) {
+                points[i++] = p;
+            }
+        }
+    }
+
+    @Benchmark
+    public double optimize() {
+        return new TourOptimizer(points).optimize(null);
+    }
+}
@@ -16,7 +16,6 @@
 package com.google.engedu.wordstack;
 
 import android.content.Context;
-import android.content.res.AssetManager;
 import android.graphics.Color;
 import android.support.v7.app.AppCompatActivity;
 import android.os.Bundle;
@@ -28,44 +27,81 @@ import android.widget.LinearLayout;
 import android.widget.TextView;
 import android.widget.Toast;
 
-import java.io.BufferedReader;
+import com.google.engedu.dictionary.DictionaryService;
+import com.google.engedu.dictionary.WordFilters;
+import com.google.engedu.dictionary.WordSources;
+import com.google.engedu.dictionary.WordStore;
+
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.InputStreamReader;
 import java.util.ArrayList;
+import java.util.List;
 import java.util.Random;
 import java.util.Stack;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executor;
 
 public class MainActivity extends AppCompatActivity {
 
-    private static final int WORD_LENGTH = 5;
+    // The store keeps every length in this range, so the word length can change without a reload
+    private static final int MIN_WORD_LENGTH = 3;
+    private static final int MAX_WORD_LENGTH = 7;
+    // Most splits of one game worth listing
+    private static final int MAX_SPLITS = 20;
     public static final int LIGHT_BLUE = Color.rgb(176, 200, 255);
     public static final int LIGHT_GREEN = Color.rgb(200, 255, 200);
-    private ArrayList<String> words = new ArrayList<>();
+    private int wordLength = 5;
+    // Words of wordLength streamed in before the store is ready
+    private List<String> words = new ArrayList<>();
+    private WordStore store;
     private Random random = new Random();
     private StackedLayout stackedLayout;
     private Stack<LetterTile> placedTiles = new Stack<>();
     private String word1, word2;
+    // Pairs of words the shuffled letters can be dealt into, shown when the player loses;
+    // null if the game started before the store was ready
+    private List<String[]> splits;
+    private DictionaryService.Listener dictionaryListener = new DictionaryService.Listener() {
+        @Override
+        public void onWordsRead(List<String> batch) {
+            for (String word : batch) {
+                if (word.length() == wordLength) words.add(word);
+            }
+        }
+
+        @Override
+        public void onDictionaryReady(WordStore store) {
+            // The store is complete and deduplicated; the streamed words are no longer needed.
+            // It also checks the played words and finds the splits, so no other structure is built.
+            MainActivity.this.store = store;
+            words = new ArrayList<>();
+        }
+
+        @Override
+        public void onDictionaryFailed(Exception e) {
+            if (isDestroyed()) return;
+            Toast toast = Toast.makeText(MainActivity.this, "Could not load dictionary", Toast.LENGTH_LONG);
+            toast.show();
+        }
+    };
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
         setContentView(R.layout.activity_main);
-        AssetManager assetManager = getAssets();
-        try {
-            InputStream inputStream = assetManager.open("words.txt");
-            BufferedReader in = new BufferedReader(new InputStreamReader(inputStream));
-            String line = null;
-            while((line = in.readLine()) != null) {
-                String word = line.trim();
-                if (word.length() == WORD_LENGTH) {
-                    words.add(word);
-                }
+        // Read the word list off the main thread, keeping the lengths a game can use;
+        // a game can start once the first batch is in
+        DictionaryService.getInstance().load(WordSources.stream(new Callable<InputStream>() {
+            @Override
+            public InputStream call() throws IOException {
+                return getAssets().open("words.txt");
             }
-        } catch (IOException e) {
-            Toast toast = Toast.makeText(this, "Could not load dictionary", Toast.LENGTH_LONG);
-            toast.show();
-        }
+        }), WordFilters.lengthBetween(MIN_WORD_LENGTH, MAX_WORD_LENGTH), new Executor() {
+            @Override
+            public void execute(Runnable command) {
+                runOnUiThread(command);
+            }
+        }, dictionaryListener);
         LinearLayout verticalLayout = (LinearLayout) findViewById(R.id.vertical_layout);
         stackedLayout = new StackedLayout(this);
         verticalLayout.addView(stackedLayout, 3);
@@ -78,6 +114,12 @@ public class MainActivity extends AppCompatActivity {
         word2LinearLayout.setOnDragListener(new DragListener());
     }
 
+    @Override
+    protected void onDestroy() {
+        DictionaryService.getInstance().removeListener(dictionaryListener);
+        super.onDestroy();
+    }
+
     private class TouchListener implements View.OnTouchListener {
 
         @Override
@@ -86,8 +128,7 @@ public class MainActivity extends AppCompatActivity {
                 LetterTile tile = (LetterTile) stackedLayout.peek();
                 tile.moveToViewGroup((ViewGroup) v);
                 if (stackedLayout.empty()) {
-                    TextView messageBox = (TextView) findViewById(R.id.message_box);
-                    messageBox.setText(word1 + " " + word2);
+                    showResult();
                 }
                 placedTiles.push(tile);
                 return true;
@@ -124,8 +165,7 @@ public class MainActivity extends AppCompatActivity {
                     placedTiles.push(tile);
 
                     if (stackedLayout.empty()) {
-                        TextView messageBox = (TextView) findViewById(R.id.message_box);
-                        messageBox.setText(word1 + " " + word2);
+                        showResult();
                     }
 
                     return true;
@@ -134,12 +174,50 @@ public class MainActivity extends AppCompatActivity {
         }
     }
 
+    private void showResult() {
+        TextView messageBox = (TextView) findViewById(R.id.message_box);
+        String played1 = readWord((LinearLayout) findViewById(R.id.word1));
+        String played2 = readWord((LinearLayout) findViewById(R.id.word2));
+        if (isSolution(played1, played2)) {
+            messageBox.setText("You win! " + played1 + " " + played2);
+        } else if (splits == null) {
+            messageBox.setText(word1 + " " + word2);
+        } else {
+            StringBuilder answers = new StringBuilder();
+            for (String[] split : splits) {
+                if (answers.length() > 0) answers.append(", ");
+                answers.append(split[0]).append(" ").append(split[1]);
+            }
+            messageBox.setText(answers.toString());
+        }
+    }
+
+    // Any valid split into two words of the dealt length wins, not just word1 and word2. Tiles
+    // leave the stack in order, so the played words always keep the shuffled order and only need
+    // to be real words of that length.
+    private boolean isSolution(String played1, String played2) {
+        if (played1.length() != word1.length() || played2.length() != word2.length()) return false;
+        if (store == null) {
+            return (played1.equals(word1) && played2.equals(word2))
+                    || (played1.equals(word2) && played2.equals(word1));
+        }
+        return store.contains(played1) && store.contains(played2);
+    }
+
+    private String readWord(LinearLayout wordLayout) {
+        StringBuilder word = new StringBuilder(wordLayout.getChildCount());
+        for (int i = 0; i < wordLayout.getChildCount(); i++) {
+            word.append(((LetterTile) wordLayout.getChildAt(i)).getText());
+        }
+        return word.toString();
+    }
+
     private String shuffleCombinedWord(String a, String b) {
         int totalLength = a.length() + b.length();
         StringBuilder res = new StringBuilder(totalLength);
 
         int pointerA = 0, pointerB = 0;
-        while (pointerA < WORD_LENGTH && pointerB < WORD_LENGTH) {
+        while (pointerA < a.length() && pointerB < b.length()) {
             int randomInt = random.nextInt(2);
             if (randomInt == 0) {
                 res.append(a.charAt(pointerA));
@@ -156,9 +234,14 @@ public class MainActivity extends AppCompatActivity {
         return res.toString();
     }
 
-    private int selectRandomInt(int offset, int size) {
-        int randInt = random.nextInt(size);
-        return (randInt + offset) % size;
+    // Two different words of wordLength, or null if there are not enough yet
+    private String[] pickWordPair() {
+        if (store != null) return store.randomPair(wordLength, random);
+        if (words.size() < 2) return null;
+        int first = random.nextInt(words.size());
+        int second = random.nextInt(words.size() - 1);
+        if (second >= first) second++;
+        return new String[] {words.get(first), words.get(second)};
     }
 
     private void pushToStackedLayout(String word) {
@@ -180,18 +263,21 @@ public class MainActivity extends AppCompatActivity {
     }
 
     public boolean onStartGame(View view) {
-        cleanUpOnStartGame();
         TextView messageBox = (TextView) findViewById(R.id.message_box);
+        String[] pair = pickWordPair();
+        if (pair == null) {
+            messageBox.setText("Dictionary is still loading");
+            return true;
+        }
+        cleanUpOnStartGame();
         messageBox.setText("Game started");
 
-        int randInt1 = selectRandomInt(0, words.size());
-        int randInt2 = selectRandomInt(randInt1, words.size() - 1);
-
-        word1 = words.get(randInt1);
-        word2 = words.get(randInt2);
+        word1 = pair[0];
+        word2 = pair[1];
 
         String shuffledCombinedWord = shuffleCombinedWord(word1, word2);
         pushToStackedLayout(shuffledCombinedWord);
+        splits = store != null ? store.splits(shuffledCombinedWord, wordLength, MAX_SPLITS) : null;
 
         messageBox.setText(shuffledCombinedWord);
 